@@ -0,0 +1,66 @@
+package com.charlles.coupon_processor.benchmark;
+
+import com.charlles.coupon_processor.ratelimit.CouponRateLimitInterceptor;
+import com.charlles.coupon_processor.ratelimit.CouponRateLimiter;
+import com.charlles.coupon_processor.ratelimit.RateLimited;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// cost added to every rate limited lookup, in ns per request. clients is the number
+// of distinct buckets in the map, the limit is high enough that nothing is rejected
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CouponRateLimitBenchmark {
+
+    @Param({"1", "100000"})
+    private int clients;
+
+    private String[] addresses;
+    private CouponRateLimiter rateLimiter;
+    private CouponRateLimitInterceptor interceptor;
+    private HandlerMethod handler;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        addresses = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            addresses[i] = "10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255);
+        }
+        rateLimiter = new CouponRateLimiter(new SimpleMeterRegistry(), true, Integer.MAX_VALUE, 1e9, 4);
+        interceptor = new CouponRateLimitInterceptor(rateLimiter, "");
+        handler = new HandlerMethod(this, getClass().getMethod("lookup"));
+        request = new MockHttpServletRequest("GET", "/coupon/code/ABC123");
+        response = new MockHttpServletResponse();
+    }
+
+    @RateLimited
+    public void lookup() {
+    }
+
+    @Benchmark
+    public long tryAcquire() {
+        return rateLimiter.tryAcquire(addresses[ThreadLocalRandom.current().nextInt(clients)]);
+    }
+
+    @Benchmark
+    public boolean preHandle() {
+        request.setRemoteAddr(addresses[ThreadLocalRandom.current().nextInt(clients)]);
+        return interceptor.preHandle(request, response, handler);
+    }
+}
@@ -0,0 +1,94 @@
+package com.charlles.coupon_processor.benchmark;
+
+import com.charlles.coupon_processor.dto.CouponDTO;
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.charlles.coupon_processor.dto.CouponStatus;
+import com.charlles.coupon_processor.entity.Coupon;
+import com.charlles.coupon_processor.serialization.CouponResponseConverter;
+import com.charlles.coupon_processor.serialization.CouponResponseSerializer;
+import com.charlles.coupon_processor.service.CouponMetrics;
+import com.charlles.coupon_processor.service.CouponService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.ObjectReader;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.module.SimpleModule;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CouponSerializationBenchmark {
+
+    private final JsonMapper mapper = JsonMapper.builder().build();
+    private final JsonMapper precompiledMapper = JsonMapper.builder()
+            .addModule(new SimpleModule().addSerializer(CouponResponseDTO.class, new CouponResponseSerializer()))
+            .build();
+
+    private CouponService couponService;
+    private Coupon coupon;
+    private CouponDTO couponDTO;
+    private CouponResponseDTO response;
+    private byte[] couponDTOJson;
+    private ObjectReader couponDTOReader;
+    private ObjectWriter responseWriter;
+    private CouponResponseConverter cachedConverter;
+
+    @Setup
+    public void setUp() {
+        // toResponse only maps fields, the collaborators are never touched
+        couponService = new CouponService(null, null, null, null, null, null, null, new CouponMetrics(new SimpleMeterRegistry()));
+        Timestamp expirationDate = Timestamp.valueOf(LocalDateTime.now().plusDays(30));
+        coupon = new Coupon(null, "ABC123", "benchmark coupon", new BigDecimal("15.00"), expirationDate, CouponStatus.ACTIVE, true);
+        ReflectionTestUtils.setField(coupon, "id", 123456789L);
+        couponDTO = new CouponDTO(null, "ABC123", "benchmark coupon", new BigDecimal("15.00"), expirationDate, true);
+        response = couponService.toResponse(coupon);
+        couponDTOJson = mapper.writeValueAsBytes(couponDTO);
+        couponDTOReader = mapper.readerFor(CouponDTO.class);
+        responseWriter = precompiledMapper.writerFor(CouponResponseDTO.class);
+        cachedConverter = new CouponResponseConverter(precompiledMapper, true, 1000);
+    }
+
+    @Benchmark
+    public CouponResponseDTO toResponse() {
+        return couponService.toResponse(coupon);
+    }
+
+    @Benchmark
+    public byte[] serializeCouponDTO() {
+        return mapper.writeValueAsBytes(couponDTO);
+    }
+
+    @Benchmark
+    public byte[] serializeCouponResponseDTO() {
+        return mapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] serializeCouponResponseDTOPrecompiled() {
+        return responseWriter.writeValueAsBytes(response);
+    }
+
+    // a GET served from CouponCache, the json of the cached response is written as is
+    @Benchmark
+    public byte[] cachedCouponResponseDTOJson() {
+        return cachedConverter.toJson(response);
+    }
+
+    @Benchmark
+    public CouponDTO deserializeCouponDTO() {
+        return couponDTOReader.readValue(couponDTOJson);
+    }
+}
@@ -0,0 +1,61 @@
+package com.charlles.coupon_processor.benchmark;
+
+import com.charlles.coupon_processor.dto.CouponStatus;
+import com.charlles.coupon_processor.entity.Coupon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CouponValidationBenchmark {
+
+    @Param({"ABC123", "AB-12.3C"})
+    private String code;
+
+    private BigDecimal discountValue;
+    private Timestamp expirationDate;
+    private Coupon coupon;
+
+    @Setup
+    public void setUp() {
+        discountValue = new BigDecimal("15.00");
+        expirationDate = Timestamp.valueOf(LocalDateTime.now().plusDays(30));
+        coupon = new Coupon(null, "ABC123", "benchmark", discountValue, expirationDate, CouponStatus.ACTIVE, true);
+    }
+
+    @Benchmark
+    public Coupon construct() {
+        return new Coupon(null, code, "benchmark", discountValue, expirationDate, CouponStatus.ACTIVE, true);
+    }
+
+    @Benchmark
+    public String validateAndNormalizeCode() {
+        coupon.setCode(code);
+        coupon.validateAndNormalizeCode();
+        return coupon.getCode();
+    }
+
+    @Benchmark
+    public Coupon validateDiscountValue() {
+        coupon.validateDiscountValue();
+        return coupon;
+    }
+
+    @Benchmark
+    public Coupon validateExpirationDate() {
+        coupon.validateExpirationDate();
+        return coupon;
+    }
+}
@@ -0,0 +1,110 @@
+package com.charlles.coupon_processor.benchmark;
+
+import com.charlles.coupon_processor.dto.CouponDTO;
+import com.charlles.coupon_processor.dto.CouponPageDTO;
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.charlles.coupon_processor.dto.CouponStatus;
+import com.charlles.coupon_processor.serialization.CouponResponseSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.cfg.DateTimeFeature;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.module.SimpleModule;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// both sides of a checkout call in json and in cbor, configured like the application
+// mappers. the payload sizes do not change between runs, they are listed in the README
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CouponWireFormatBenchmark {
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    private CouponDTO couponDTO;
+    private CouponResponseDTO response;
+    private CouponPageDTO page;
+    private byte[] couponDTOBytes;
+    private byte[] responseBytes;
+    private ObjectWriter couponDTOWriter;
+    private ObjectReader couponDTOReader;
+    private ObjectWriter responseWriter;
+    private ObjectReader responseReader;
+    private ObjectWriter pageWriter;
+
+    @Setup
+    public void setUp() {
+        SimpleModule serializers = new SimpleModule()
+                .addSerializer(CouponResponseDTO.class, new CouponResponseSerializer());
+        ObjectMapper mapper = "cbor".equals(format)
+                ? CBORMapper.builder().addModule(serializers).enable(DateTimeFeature.WRITE_DATES_AS_TIMESTAMPS).build()
+                : JsonMapper.builder().addModule(serializers).build();
+
+        Timestamp expirationDate = Timestamp.valueOf(LocalDateTime.now().plusDays(30));
+        couponDTO = new CouponDTO(null, "ABC123", "benchmark coupon", new BigDecimal("15.00"), expirationDate, true);
+        response = response(123456789L, expirationDate);
+        List<CouponResponseDTO> items = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            items.add(response(123456789L + i, expirationDate));
+        }
+        page = new CouponPageDTO(items, "123456838");
+
+        couponDTOWriter = mapper.writerFor(CouponDTO.class);
+        couponDTOReader = mapper.readerFor(CouponDTO.class);
+        responseWriter = mapper.writerFor(CouponResponseDTO.class);
+        responseReader = mapper.readerFor(CouponResponseDTO.class);
+        pageWriter = mapper.writerFor(CouponPageDTO.class);
+        couponDTOBytes = couponDTOWriter.writeValueAsBytes(couponDTO);
+        responseBytes = responseWriter.writeValueAsBytes(response);
+    }
+
+    // the checkout service sending a request body
+    @Benchmark
+    public byte[] writeCouponDTO() {
+        return couponDTOWriter.writeValueAsBytes(couponDTO);
+    }
+
+    // this api reading it
+    @Benchmark
+    public CouponDTO readCouponDTO() {
+        return couponDTOReader.readValue(couponDTOBytes);
+    }
+
+    @Benchmark
+    public byte[] writeCouponResponseDTO() {
+        return responseWriter.writeValueAsBytes(response);
+    }
+
+    // the checkout service reading the answer
+    @Benchmark
+    public CouponResponseDTO readCouponResponseDTO() {
+        return responseReader.readValue(responseBytes);
+    }
+
+    @Benchmark
+    public byte[] writeCouponPage() {
+        return pageWriter.writeValueAsBytes(page);
+    }
+
+    private static CouponResponseDTO response(long id, Timestamp expirationDate) {
+        return new CouponResponseDTO(String.valueOf(id), "ABC123", "benchmark coupon", new BigDecimal("15.00"),
+                expirationDate, CouponStatus.ACTIVE, true, false, null, 0, 3);
+    }
+}
@@ -0,0 +1,102 @@
+package com.charlles.coupon_processor.cache;
+
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+@Component
+public class CouponCache implements MeterBinder {
+
+    private final Cache<Long, CouponResponseDTO> cache;
+    // one stamp per key with a load in flight, an eviction drops the stamp of its key only
+    private final Map<Long, Object> loading = new ConcurrentHashMap<>();
+
+    public CouponCache(@Value("${coupon.cache.maximum-size:10000}") long maximumSize,
+                       @Value("${coupon.cache.ttl:PT5M}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new ExpireWithCoupon(ttl.toNanos()))
+                .recordStats()
+                .build();
+    }
+
+    // the loader runs outside of the cache lock so a slow database call never blocks
+    // other keys, a load that raced with an invalidation of the same key is returned
+    // but not cached. the stamp check and the put run inside compute, so an eviction
+    // of that key lands either before the check or after the put
+    public CouponResponseDTO get(Long id, Function<Long, CouponResponseDTO> loader) {
+        CouponResponseDTO cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+        Object stamp = new Object();
+        loading.put(id, stamp);
+        CouponResponseDTO loaded;
+        try {
+            loaded = loader.apply(id);
+        } catch (RuntimeException ex) {
+            loading.remove(id, stamp);
+            throw ex;
+        }
+        loading.computeIfPresent(id, (key, current) -> {
+            if (current != stamp) {
+                return current;
+            }
+            cache.put(key, loaded);
+            return null;
+        });
+        return loaded;
+    }
+
+    public CouponResponseDTO getIfPresent(Long id) {
+        return cache.getIfPresent(id);
+    }
+
+    public void evict(Long id) {
+        loading.compute(id, (key, current) -> {
+            cache.invalidate(key);
+            return null;
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "coupons");
+    }
+
+    // entries never outlive the coupon itself
+    private record ExpireWithCoupon(long ttlNanos) implements Expiry<Long, CouponResponseDTO> {
+
+        @Override
+        public long expireAfterCreate(Long id, CouponResponseDTO coupon, long currentTime) {
+            if (coupon.expirationDate() == null) {
+                return ttlNanos;
+            }
+            long untilExpiration = TimeUnit.MILLISECONDS.toNanos(
+                    coupon.expirationDate().getTime() - System.currentTimeMillis());
+            return Math.max(0, Math.min(ttlNanos, untilExpiration));
+        }
+
+        @Override
+        public long expireAfterUpdate(Long id, CouponResponseDTO coupon, long currentTime, long currentDuration) {
+            return expireAfterCreate(id, coupon, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Long id, CouponResponseDTO coupon, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.charlles.coupon_processor.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// answers "definitely absent" for ids and codes that were never stored, so
+// guessed lookups are rejected without a repository call. until the startup
+// rebuild finishes every key is reported as possibly present
+@Component
+public class CouponMembershipFilter {
+
+    private final BloomFilter ids;
+    private final BloomFilter codes;
+    private volatile boolean ready;
+
+    public CouponMembershipFilter(@Value("${coupon.membership-filter.expected-insertions:1000000}") long expectedInsertions,
+                                  @Value("${coupon.membership-filter.false-positive-probability:0.01}") double falsePositiveProbability) {
+        this.ids = new BloomFilter(expectedInsertions, falsePositiveProbability);
+        this.codes = new BloomFilter(expectedInsertions, falsePositiveProbability);
+    }
+
+    public void add(Long id, String code) {
+        ids.put(BloomFilter.mix(id));
+        codes.put(BloomFilter.hash(code));
+    }
+
+    public boolean mightContainId(Long id) {
+        return !ready || ids.mightContain(BloomFilter.mix(id));
+    }
+
+    public boolean mightContainCode(String code) {
+        return !ready || codes.mightContain(BloomFilter.hash(code));
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markReady() {
+        this.ready = true;
+    }
+}
@@ -0,0 +1,49 @@
+package com.charlles.coupon_processor.cache;
+
+import com.charlles.coupon_processor.repository.CouponKey;
+import com.charlles.coupon_processor.repository.CouponRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@Component
+public class CouponMembershipFilterLoader {
+    private static final Logger log = LoggerFactory.getLogger(CouponMembershipFilterLoader.class);
+
+    private final CouponRepository couponRepository;
+    private final CouponMembershipFilter membershipFilter;
+    private final boolean enabled;
+
+    public CouponMembershipFilterLoader(CouponRepository couponRepository,
+                                        CouponMembershipFilter membershipFilter,
+                                        @Value("${coupon.membership-filter.enabled:true}") boolean enabled) {
+        this.couponRepository = couponRepository;
+        this.membershipFilter = membershipFilter;
+        this.enabled = enabled;
+    }
+
+    // coupons created while the rebuild runs are added by the services directly
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        AtomicLong loaded = new AtomicLong();
+        try (Stream<CouponKey> keys = couponRepository.streamAllKeys()) {
+            keys.forEach(key -> {
+                membershipFilter.add(key.id(), key.code());
+                loaded.incrementAndGet();
+            });
+        }
+        membershipFilter.markReady();
+        log.info("coupon membership filter rebuilt with {} coupons", loaded.get());
+    }
+}
@@ -0,0 +1,64 @@
+package com.charlles.coupon_processor.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// concurrent loads of the same key share one execution, callers that arrive while it
+// runs get its result or its exception instead of starting their own
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> execution = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, execution);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+        executed.increment();
+        try {
+            V value = loader.get();
+            execution.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            execution.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, execution);
+        }
+    }
+
+    // after a write, callers must not join a load that may have read the old state
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    public long executed() {
+        return executed.sum();
+    }
+
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    private V await(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (ex.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+}
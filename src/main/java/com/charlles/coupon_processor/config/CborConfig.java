@@ -0,0 +1,17 @@
+package com.charlles.coupon_processor.config;
+
+import org.springframework.boot.jackson.autoconfigure.CborMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import tools.jackson.databind.cfg.DateTimeFeature;
+
+@Configuration
+public class CborConfig {
+
+    // the json api keeps iso dates, in cbor a timestamp is an integer of epoch millis
+    // instead of text the other side has to parse
+    @Bean
+    public CborMapperBuilderCustomizer cborDatesAsTimestamps() {
+        return builder -> builder.enable(DateTimeFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+}
@@ -0,0 +1,34 @@
+package com.charlles.coupon_processor.config;
+
+import com.charlles.coupon_processor.ratelimit.CouponRateLimitInterceptor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverters;
+import org.springframework.http.converter.cbor.JacksonCborHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final CouponRateLimitInterceptor rateLimitInterceptor;
+    private final CBORMapper cborMapper;
+
+    public WebConfig(CouponRateLimitInterceptor rateLimitInterceptor, CBORMapper cborMapper) {
+        this.rateLimitInterceptor = rateLimitInterceptor;
+        this.cborMapper = cborMapper;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(rateLimitInterceptor).addPathPatterns("/coupon/**");
+    }
+
+    // application/cbor for clients that ask for it, in the cbor slot after json so a
+    // request without Accept still gets json. the boot mapper carries the same
+    // serializers as the json one
+    @Override
+    public void configureMessageConverters(HttpMessageConverters.ServerBuilder builder) {
+        builder.withCborConverter(new JacksonCborHttpMessageConverter(cborMapper));
+    }
+}
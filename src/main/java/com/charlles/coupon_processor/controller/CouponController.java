@@ -1,41 +1,120 @@
 package com.charlles.coupon_processor.controller;
 
+import com.charlles.coupon_processor.dto.CouponApplyDTO;
+import com.charlles.coupon_processor.dto.CouponBatchResponseDTO;
+import com.charlles.coupon_processor.dto.CouponBulkRequestDTO;
+import com.charlles.coupon_processor.dto.CouponBulkResultDTO;
 import com.charlles.coupon_processor.dto.CouponDTO;
+import com.charlles.coupon_processor.dto.CouponEventDTO;
+import com.charlles.coupon_processor.dto.CouponExportFormat;
+import com.charlles.coupon_processor.dto.CouponFilter;
+import com.charlles.coupon_processor.dto.CouponImportJobDTO;
+import com.charlles.coupon_processor.dto.CouponPageDTO;
+import com.charlles.coupon_processor.dto.CouponQuoteBatchDTO;
+import com.charlles.coupon_processor.dto.CouponQuoteDTO;
+import com.charlles.coupon_processor.dto.CouponQuoteRequestDTO;
 import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.charlles.coupon_processor.dto.CouponStatus;
+import com.charlles.coupon_processor.ratelimit.CouponRateLimitInterceptor;
+import com.charlles.coupon_processor.ratelimit.RateLimited;
+import com.charlles.coupon_processor.repository.CouponVersion;
+import com.charlles.coupon_processor.serialization.CouponNdjsonIterator;
+import com.charlles.coupon_processor.service.CouponBatchService;
+import com.charlles.coupon_processor.service.CouponBulkService;
+import com.charlles.coupon_processor.service.CouponEventLog;
+import com.charlles.coupon_processor.service.CouponExportService;
+import com.charlles.coupon_processor.service.CouponIdempotencyService;
+import com.charlles.coupon_processor.service.CouponImportService;
+import com.charlles.coupon_processor.service.CouponPricingService;
 import com.charlles.coupon_processor.service.CouponService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
 
 @RestController
 @RequestMapping("/coupon")
 @Tag(name = "coupon", description = "manage discount coupons")
 public class CouponController {
     private static final Logger log = LoggerFactory.getLogger(CouponController.class);
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
     private final CouponService service;
+    private final CouponBatchService batchService;
+    private final CouponBulkService bulkService;
+    private final CouponExportService exportService;
+    private final CouponImportService importService;
+    private final CouponIdempotencyService idempotencyService;
+    private final CouponPricingService pricingService;
+    private final CouponEventLog eventLog;
+    private final CouponHttpCaching httpCaching;
+    private final ObjectReader couponReader;
 
-    public CouponController(CouponService service) {
+    public CouponController(CouponService service,
+                            CouponBatchService batchService,
+                            CouponBulkService bulkService,
+                            CouponExportService exportService,
+                            CouponImportService importService,
+                            CouponIdempotencyService idempotencyService,
+                            CouponPricingService pricingService,
+                            CouponEventLog eventLog,
+                            CouponHttpCaching httpCaching,
+                            ObjectMapper objectMapper) {
         this.service = service;
+        this.batchService = batchService;
+        this.bulkService = bulkService;
+        this.exportService = exportService;
+        this.importService = importService;
+        this.idempotencyService = idempotencyService;
+        this.pricingService = pricingService;
+        this.eventLog = eventLog;
+        this.httpCaching = httpCaching;
+        this.couponReader = objectMapper.readerFor(CouponDTO.class);
     }
 
     @PostMapping
-    @Operation(summary = "create new coupon", description = "create a discount coupon with code and expiration date")
+    @Operation(summary = "create new coupon", description = "create a discount coupon with code and expiration date, retries with the same Idempotency-Key replay the first result")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "coupon created"),
-            @ApiResponse(responseCode = "400", description = "invalid data")
+            @ApiResponse(responseCode = "400", description = "invalid data"),
+            @ApiResponse(responseCode = "409", description = "code already exists"),
+            @ApiResponse(responseCode = "422", description = "idempotency key used for a different request")
     })
-    public ResponseEntity<CouponResponseDTO> create(@Valid @RequestBody CouponDTO couponDTO) {
+    public ResponseEntity<CouponResponseDTO> create(@Valid @RequestBody CouponDTO couponDTO,
+                                                    @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                                    HttpServletRequest request) {
 
-        CouponResponseDTO response = service.create(couponDTO);
+        CouponIdempotencyService.Result result = idempotencyService.execute(
+                "create", idempotencyKey, fingerprint(request, idempotencyKey, couponDTO), () -> service.create(couponDTO));
+        CouponResponseDTO response = result.response();
 
         URI uri = ServletUriComponentsBuilder
                 .fromCurrentRequest()
@@ -43,20 +122,253 @@ public class CouponController {
                 .buildAndExpand(response.id())
                 .toUri();
 
-        return ResponseEntity.created(uri).body(response);
+        return ResponseEntity.created(uri)
+                .header(IDEMPOTENT_REPLAYED, Boolean.toString(result.replayed()))
+                .body(response);
+
+    }
+
+    @PostMapping(path = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    @Operation(summary = "create coupons in bulk", description = "create a json or cbor array of coupons, reporting the result of each index")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "batch processed")
+    })
+    public ResponseEntity<CouponBatchResponseDTO> createBatch(@RequestBody List<CouponDTO> coupons) {
+        return ResponseEntity.ok(batchService.createAll(coupons.iterator()));
+    }
+
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "create coupons from ndjson stream", description = "create one coupon per line without buffering the whole body")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "batch processed, malformed lines are rejected at their index")
+    })
+    public ResponseEntity<CouponBatchResponseDTO> createBatchStream(HttpServletRequest request) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8))) {
+            return ResponseEntity.ok(batchService.createAll(new CouponNdjsonIterator(reader, couponReader)));
+        }
+    }
+
+    @PostMapping("/bulk/delete")
+    @Operation(summary = "bulk delete coupons", description = "soft delete coupons by ids or by code prefix, status and expiration range, counting the already deleted ones")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "bulk delete processed"),
+            @ApiResponse(responseCode = "400", description = "invalid selection")
+    })
+    public ResponseEntity<CouponBulkResultDTO> bulkDelete(@RequestBody CouponBulkRequestDTO request) {
+        return ResponseEntity.ok(bulkService.delete(request));
+    }
+
+    @PostMapping("/bulk/status")
+    @Operation(summary = "bulk change coupon status", description = "set ACTIVE or INACTIVE on coupons selected by ids or filter, deleted coupons are skipped")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "bulk status change processed"),
+            @ApiResponse(responseCode = "400", description = "invalid selection or target status")
+    })
+    public ResponseEntity<CouponBulkResultDTO> bulkChangeStatus(@RequestParam CouponStatus target,
+                                                                @RequestBody CouponBulkRequestDTO request) {
+        return ResponseEntity.ok(bulkService.changeStatus(request, target));
+    }
+
+    @GetMapping
+    @Operation(summary = "list coupons", description = "cursor paginated listing ordered by id, pass nextCursor to get the following page, honouring If-None-Match")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "page of coupons"),
+            @ApiResponse(responseCode = "304", description = "page not modified"),
+            @ApiResponse(responseCode = "400", description = "invalid cursor")
+    })
+    public ResponseEntity<CouponPageDTO> findPage(
+            @RequestParam(required = false) CouponStatus status,
+            @RequestParam(required = false) Boolean published,
+            @RequestParam(required = false) Boolean redeemed,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime expiresAfter,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime expiresBefore,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        CouponFilter filter = new CouponFilter(
+                status,
+                published,
+                redeemed,
+                expiresAfter == null ? null : Timestamp.valueOf(expiresAfter),
+                expiresBefore == null ? null : Timestamp.valueOf(expiresBefore));
+        CouponPageDTO page = service.findPage(filter, cursor, limit);
+        // the page is still queried, spring answers 304 when If-None-Match has this etag
+        return ResponseEntity.ok()
+                .eTag(httpCaching.etag(page))
+                .cacheControl(CacheControl.noCache())
+                .body(page);
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "export coupons", description = "stream every coupon as ndjson or csv, optionally filtered by status")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "export streamed"),
+            @ApiResponse(responseCode = "400", description = "unsupported format")
+    })
+    public void export(@RequestParam(defaultValue = "ndjson") String format,
+                       @RequestParam(required = false) CouponStatus status,
+                       HttpServletResponse response) throws IOException {
+        CouponExportFormat exportFormat = CouponExportFormat.from(format);
+        response.setContentType(exportFormat.contentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=coupons." + exportFormat.extension());
+        exportService.export(status, exportFormat, response.getOutputStream());
+    }
+
+    @PostMapping(path = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "import coupons from csv", description = "start an async import, columns code, description, discountValue, expirationDate and published")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "import started")
+    })
+    public ResponseEntity<CouponImportJobDTO> importCoupons(@RequestParam("file") MultipartFile file) {
+        CouponImportJobDTO job = importService.start(file);
+
+        URI uri = ServletUriComponentsBuilder
+                .fromCurrentRequest()
+                .path("/{id}")
+                .buildAndExpand(job.id())
+                .toUri();
+
+        return ResponseEntity.accepted().location(uri).body(job);
+    }
+
+    @GetMapping("/import/{jobId}")
+    @Operation(summary = "get import status", description = "progress, rows per second and counts of an import job")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "import job found"),
+            @ApiResponse(responseCode = "404", description = "import job not found")
+    })
+    public ResponseEntity<CouponImportJobDTO> importStatus(@PathVariable String jobId) {
+        return ResponseEntity.ok(importService.status(jobId));
+    }
 
+    @GetMapping("/import/{jobId}/errors")
+    @Operation(summary = "download import error report", description = "csv with line number, error and raw content of every rejected row")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "error report"),
+            @ApiResponse(responseCode = "404", description = "import job not found")
+    })
+    public ResponseEntity<Resource> importErrors(@PathVariable String jobId) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=import-" + jobId + "-errors.csv")
+                .body(new FileSystemResource(importService.errorReport(jobId)));
     }
 
     @GetMapping("/{id}")
-    @Operation(summary = "get coupon", description = "find coupon by id")
+    @Operation(summary = "get coupon", description = "find coupon by id, a matching If-None-Match gets a 304 from the coupon version alone")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "coupon found"),
+            @ApiResponse(responseCode = "304", description = "coupon not modified"),
             @ApiResponse(responseCode = "404", description = "coupon not found")
     })
-    public ResponseEntity<CouponResponseDTO> findById(@PathVariable Long id) {
+    @RateLimited
+    public ResponseEntity<CouponResponseDTO> findById(@PathVariable Long id,
+                                                      @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            CouponVersion current = service.findVersion(id);
+            if (httpCaching.notModified(ifNoneMatch, current.version())) {
+                return ResponseEntity.status(304)
+                        .eTag(httpCaching.etag(current.version()))
+                        .cacheControl(httpCaching.cacheControl(current.status(), current.expirationDate()))
+                        .build();
+            }
+        }
         CouponResponseDTO response = service.findById(id);
+        return ResponseEntity.ok()
+                .eTag(httpCaching.etag(response.version()))
+                .cacheControl(httpCaching.cacheControl(response.status(), response.expirationDate()))
+                .body(response);
+    }
+
+    @GetMapping("/{id}/history")
+    @Operation(summary = "get coupon history", description = "create, redeem, delete and status change events of a coupon, oldest first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "coupon history"),
+            @ApiResponse(responseCode = "404", description = "coupon not found")
+    })
+    @RateLimited
+    public ResponseEntity<List<CouponEventDTO>> history(@PathVariable Long id) {
+        service.findById(id);
+        return ResponseEntity.ok(eventLog.history(id));
+    }
+
+    @PostMapping("/{id}/redeem")
+    @Operation(summary = "redeem coupon", description = "atomically mark an active coupon as redeemed, exactly once, honouring Idempotency-Key")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "coupon redeemed"),
+            @ApiResponse(responseCode = "404", description = "coupon not found"),
+            @ApiResponse(responseCode = "409", description = "coupon cannot be redeemed"),
+            @ApiResponse(responseCode = "422", description = "idempotency key used for a different request")
+    })
+    @RateLimited
+    public ResponseEntity<CouponResponseDTO> redeem(@PathVariable Long id,
+                                                    @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                                    HttpServletRequest request) {
+        CouponIdempotencyService.Result result = idempotencyService.execute(
+                "redeem", idempotencyKey, fingerprint(request, idempotencyKey, null), () -> service.redeem(id));
+        return ResponseEntity.ok()
+                .header(IDEMPOTENT_REPLAYED, Boolean.toString(result.replayed()))
+                .body(result.response());
+    }
+
+    @PostMapping("/{code}/apply")
+    @Operation(summary = "quote coupon", description = "apply the coupon discount to an order amount without redeeming it")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "discounted total"),
+            @ApiResponse(responseCode = "400", description = "invalid amount"),
+            @ApiResponse(responseCode = "404", description = "coupon not found"),
+            @ApiResponse(responseCode = "409", description = "coupon cannot be redeemed")
+    })
+    @RateLimited
+    public ResponseEntity<CouponQuoteDTO> apply(@PathVariable String code, @Valid @RequestBody CouponApplyDTO request) {
+        return ResponseEntity.ok(pricingService.quote(code, request.amount()));
+    }
+
+    @PostMapping("/apply")
+    @Operation(summary = "quote coupons in bulk", description = "quote a json array of code and amount carts, reporting the result of each index")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "carts quoted"),
+            @ApiResponse(responseCode = "400", description = "too many carts"),
+            @ApiResponse(responseCode = "429", description = "too many lookups")
+    })
+    @RateLimited
+    public ResponseEntity<CouponQuoteBatchDTO> applyAll(
+            @RequestBody @Size(max = CouponPricingService.MAX_CARTS, message = "at most " + CouponPricingService.MAX_CARTS + " carts per request")
+            List<CouponQuoteRequestDTO> carts,
+            HttpServletRequest request) {
+        return ResponseEntity.ok(pricingService.quoteAll(carts,
+                lookups -> CouponRateLimitInterceptor.chargeLookups(request, lookups.codes(), lookups.notFound())));
+    }
+
+    @GetMapping("/code/{code}")
+    @Operation(summary = "get coupon by code", description = "find coupon by its normalized code")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "coupon found"),
+            @ApiResponse(responseCode = "404", description = "coupon not found")
+    })
+    @RateLimited
+    public ResponseEntity<CouponResponseDTO> findByCode(@PathVariable String code) {
+        CouponResponseDTO response = service.findByCode(code);
         return ResponseEntity.ok().body(response);
+    }
 
+    @PostMapping("/code/{code}/redeem")
+    @Operation(summary = "redeem coupon by code", description = "atomically mark an active coupon as redeemed, exactly once, honouring Idempotency-Key")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "coupon redeemed"),
+            @ApiResponse(responseCode = "404", description = "coupon not found"),
+            @ApiResponse(responseCode = "409", description = "coupon cannot be redeemed"),
+            @ApiResponse(responseCode = "422", description = "idempotency key used for a different request")
+    })
+    @RateLimited
+    public ResponseEntity<CouponResponseDTO> redeemByCode(@PathVariable String code,
+                                                          @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                                          HttpServletRequest request) {
+        CouponIdempotencyService.Result result = idempotencyService.execute(
+                "redeem", idempotencyKey, fingerprint(request, idempotencyKey, null), () -> service.redeemByCode(code));
+        return ResponseEntity.ok()
+                .header(IDEMPOTENT_REPLAYED, Boolean.toString(result.replayed()))
+                .body(result.response());
     }
 
     @DeleteMapping("/{id}")
@@ -70,4 +382,9 @@ public class CouponController {
         service.delete(id);
         return ResponseEntity.noContent().build();
     }
+
+    // only requests that send a key pay for the hash
+    private String fingerprint(HttpServletRequest request, String idempotencyKey, Object body) {
+        return idempotencyKey == null ? null : idempotencyService.fingerprint(request.getMethod(), request.getRequestURI(), body);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.charlles.coupon_processor.controller;
+
+import com.charlles.coupon_processor.dto.CouponPageDTO;
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.charlles.coupon_processor.dto.CouponStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ETag;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+
+// etags come from the coupon version, which every update of a returned field increments,
+// so a poll can be answered with a 304 by comparing numbers. they are weak because the
+// same version is rendered as json and, depending on Accept, in other encodings
+@Component
+public class CouponHttpCaching {
+
+    private final Clock clock;
+    private final Duration maxAge;
+    private final Duration deletedMaxAge;
+
+    public CouponHttpCaching(Clock clock,
+                             @Value("${coupon.http.max-age:PT1M}") Duration maxAge,
+                             @Value("${coupon.http.deleted-max-age:P1D}") Duration deletedMaxAge) {
+        this.clock = clock;
+        this.maxAge = maxAge;
+        this.deletedMaxAge = deletedMaxAge;
+    }
+
+    public String etag(long version) {
+        return "W/\"" + version + "\"";
+    }
+
+    // If-None-Match compares weakly, a list or * is allowed
+    public boolean notModified(String ifNoneMatch, long version) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        ETag current = ETag.create(etag(version));
+        for (ETag candidate : ETag.parse(ifNoneMatch)) {
+            if (candidate.isWildcard() || candidate.compare(current, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // a page changes when any of its coupons does or when rows are added after it
+    public String etag(CouponPageDTO page) {
+        long hash = 17;
+        for (CouponResponseDTO coupon : page.items()) {
+            hash = 31 * hash + coupon.id().hashCode();
+            hash = 31 * hash + Long.hashCode(coupon.version());
+        }
+        hash = 31 * hash + (page.nextCursor() == null ? 0 : page.nextCursor().hashCode());
+        return "W/\"" + page.items().size() + "-" + Long.toHexString(hash) + "\"";
+    }
+
+    // a deleted coupon never changes again. any other one is cached at most until it
+    // expires, since that is when its answer to a client changes without a new version
+    public CacheControl cacheControl(CouponStatus status, Timestamp expirationDate) {
+        if (status == CouponStatus.DELETED) {
+            return CacheControl.maxAge(deletedMaxAge);
+        }
+        Duration age = maxAge;
+        if (expirationDate != null) {
+            long untilExpiration = expirationDate.getTime() - clock.millis();
+            if (untilExpiration > 0 && untilExpiration < age.toMillis()) {
+                age = Duration.ofSeconds(untilExpiration / 1000);
+            }
+        }
+        return CacheControl.maxAge(age).mustRevalidate();
+    }
+}
@@ -0,0 +1,9 @@
+package com.charlles.coupon_processor.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.math.BigDecimal;
+
+public record CouponApplyDTO(
+        @NotNull(message = "amount cannot be null") BigDecimal amount
+) {}
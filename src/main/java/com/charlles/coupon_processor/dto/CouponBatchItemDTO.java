@@ -0,0 +1,16 @@
+package com.charlles.coupon_processor.dto;
+
+public record CouponBatchItemDTO(
+        int index,
+        boolean accepted,
+        String id,
+        String error
+) {
+    public static CouponBatchItemDTO accepted(int index, Long id) {
+        return new CouponBatchItemDTO(index, true, id.toString(), null);
+    }
+
+    public static CouponBatchItemDTO rejected(int index, String error) {
+        return new CouponBatchItemDTO(index, false, null, error);
+    }
+}
@@ -0,0 +1,9 @@
+package com.charlles.coupon_processor.dto;
+
+import java.util.List;
+
+public record CouponBatchResponseDTO(
+        int accepted,
+        int rejected,
+        List<CouponBatchItemDTO> items
+) {}
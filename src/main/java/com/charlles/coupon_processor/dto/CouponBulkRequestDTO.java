@@ -0,0 +1,18 @@
+package com.charlles.coupon_processor.dto;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+// selects the coupons of a bulk operation, either an explicit id list or a filter
+public record CouponBulkRequestDTO(
+        List<Long> ids,
+        String codePrefix,
+        CouponStatus status,
+        Timestamp expiresAfter,
+        Timestamp expiresBefore
+) {
+
+    public boolean hasFilter() {
+        return codePrefix != null || status != null || expiresAfter != null || expiresBefore != null;
+    }
+}
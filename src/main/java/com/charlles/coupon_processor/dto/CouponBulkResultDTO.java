@@ -0,0 +1,9 @@
+package com.charlles.coupon_processor.dto;
+
+public record CouponBulkResultDTO(
+        long matched,
+        long updated,
+        long unchanged,
+        long alreadyDeleted,
+        long notFound
+) {}
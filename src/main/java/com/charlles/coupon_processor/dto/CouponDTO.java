@@ -1,5 +1,6 @@
 package com.charlles.coupon_processor.dto;
 
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 
 import java.math.BigDecimal;
@@ -7,11 +8,18 @@ import java.sql.Timestamp;
 
 public record CouponDTO(
         Long id,
-        @NotNull(message = "code cannot be null") String code,
+        String code,
         String description,
         @NotNull(message = "discount cannot be null") BigDecimal discountValue,
         @NotNull(message = "expiration date cannot be null") Timestamp expirationDate,
-        Boolean published) {
+        Boolean published,
+        // null keeps the coupon single-use
+        @Min(value = 1, message = "max redemptions must be at least 1") Integer maxRedemptions) {
+
+    public CouponDTO(Long id, String code, String description, BigDecimal discountValue, Timestamp expirationDate, Boolean published) {
+        this(id, code, description, discountValue, expirationDate, published, null);
+    }
+
     public boolean isPublished() {
         return published != null && published;
     }
@@ -0,0 +1,9 @@
+package com.charlles.coupon_processor.dto;
+
+import java.sql.Timestamp;
+
+public record CouponEventDTO(
+        CouponEventType type,
+        String detail,
+        Timestamp occurredAt
+) {}
@@ -0,0 +1,8 @@
+package com.charlles.coupon_processor.dto;
+
+public enum CouponEventType {
+    CREATED,
+    REDEEMED,
+    DELETED,
+    STATUS_CHANGED
+}
@@ -0,0 +1,33 @@
+package com.charlles.coupon_processor.dto;
+
+import com.charlles.coupon_processor.exception.InvalidCouponException;
+
+public enum CouponExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    CouponExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    public static CouponExportFormat from(String format) {
+        for (CouponExportFormat value : values()) {
+            if (value.extension.equalsIgnoreCase(format)) {
+                return value;
+            }
+        }
+        throw new InvalidCouponException("unsupported export format: " + format);
+    }
+}
@@ -0,0 +1,11 @@
+package com.charlles.coupon_processor.dto;
+
+import java.sql.Timestamp;
+
+public record CouponFilter(
+        CouponStatus status,
+        Boolean published,
+        Boolean redeemed,
+        Timestamp expiresAfter,
+        Timestamp expiresBefore
+) {}
@@ -0,0 +1,18 @@
+package com.charlles.coupon_processor.dto;
+
+import java.time.Instant;
+
+public record CouponImportJobDTO(
+        String id,
+        CouponImportState state,
+        long rowsRead,
+        long accepted,
+        long rejected,
+        long bytesRead,
+        long totalBytes,
+        double progress,
+        double rowsPerSecond,
+        Instant startedAt,
+        Instant finishedAt,
+        String error
+) {}
@@ -0,0 +1,8 @@
+package com.charlles.coupon_processor.dto;
+
+public enum CouponImportState {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,8 @@
+package com.charlles.coupon_processor.dto;
+
+import java.util.List;
+
+public record CouponPageDTO(
+        List<CouponResponseDTO> items,
+        String nextCursor
+) {}
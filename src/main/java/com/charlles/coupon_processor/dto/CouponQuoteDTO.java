@@ -0,0 +1,11 @@
+package com.charlles.coupon_processor.dto;
+
+import java.math.BigDecimal;
+
+// amounts are in currency units with 2 decimals, the total never goes below zero
+public record CouponQuoteDTO(
+        String code,
+        BigDecimal amount,
+        BigDecimal discount,
+        BigDecimal total
+) {}
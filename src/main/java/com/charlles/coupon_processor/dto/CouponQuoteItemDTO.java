@@ -0,0 +1,16 @@
+package com.charlles.coupon_processor.dto;
+
+public record CouponQuoteItemDTO(
+        int index,
+        boolean quoted,
+        CouponQuoteDTO quote,
+        String error
+) {
+    public static CouponQuoteItemDTO quoted(int index, CouponQuoteDTO quote) {
+        return new CouponQuoteItemDTO(index, true, quote, null);
+    }
+
+    public static CouponQuoteItemDTO rejected(int index, String error) {
+        return new CouponQuoteItemDTO(index, false, null, error);
+    }
+}
@@ -0,0 +1,8 @@
+package com.charlles.coupon_processor.dto;
+
+import java.math.BigDecimal;
+
+public record CouponQuoteRequestDTO(
+        String code,
+        BigDecimal amount
+) {}
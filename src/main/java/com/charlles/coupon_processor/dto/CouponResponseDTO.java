@@ -11,5 +11,13 @@ public record CouponResponseDTO(
         Timestamp expirationDate,
         CouponStatus status,
         boolean published,
-        boolean redeemed
-) {}
\ No newline at end of file
+        boolean redeemed,
+        Integer maxRedemptions,
+        int redemptionCount,
+        long version
+) {
+    public CouponResponseDTO withRedemptionCount(int redemptionCount) {
+        return new CouponResponseDTO(id, code, description, discountValue, expirationDate, status, published,
+                maxRedemptions != null && redemptionCount >= maxRedemptions, maxRedemptions, redemptionCount, version);
+    }
+}
@@ -2,7 +2,8 @@ package com.charlles.coupon_processor.entity;
 
 import com.charlles.coupon_processor.dto.CouponStatus;
 import com.charlles.coupon_processor.exception.CouponAlreadyDeletedException;
-import com.charlles.coupon_processor.exception.InvalidCouponException;
+import com.charlles.coupon_processor.exception.CouponNotRedeemableException;
+import com.charlles.coupon_processor.validation.CouponValidator;
 import jakarta.persistence.*;
 
 import java.math.BigDecimal;
@@ -10,13 +11,21 @@ import java.sql.Timestamp;
 import java.time.Instant;
 
 @Entity
-@Table(name = "coupons")
+@Table(name = "coupons", indexes = {
+        @Index(name = "ux_coupons_code", columnList = "code", unique = true),
+        @Index(name = "idx_coupons_status_id", columnList = "status, id"),
+        @Index(name = "idx_coupons_published_redeemed_id", columnList = "published, redeemed, id"),
+        @Index(name = "idx_coupons_expiration_date_id", columnList = "expirationDate, id"),
+        @Index(name = "idx_coupons_status_expiration_date", columnList = "status, expirationDate")
+})
 public class Coupon {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "coupons_seq")
+    @SequenceGenerator(name = "coupons_seq", sequenceName = "coupons_seq", allocationSize = 50)
     private Long id;
 
+    @Column(nullable = false)
     private String code;
     @Column(length = 1000)
     private String description;
@@ -29,6 +38,21 @@ public class Coupon {
     private boolean published;
     private boolean redeemed;
 
+    // multi-use coupons only, redeemed turns true once redemptionCount reaches
+    // maxRedemptions. redemptionsReserved counts the permits handed to
+    // CouponRedemptionLimiter and never goes past maxRedemptions. it is only changed by
+    // the guarded updates, which do not touch the version, so a save of an entity read
+    // before a reservation must not write it back
+    private Integer maxRedemptions;
+    private int redemptionCount;
+    @Column(nullable = false, updatable = false)
+    private int redemptionsReserved;
+
+    // the bulk and conditional updates in CouponRepository increment it themselves,
+    // except for the reservation bookkeeping that no response shows
+    @Version
+    private long version;
+
     public Long getId() {
         return id;
     }
@@ -93,7 +117,32 @@ public class Coupon {
         this.redeemed = redeemed;
     }
 
+    public Integer getMaxRedemptions() {
+        return maxRedemptions;
+    }
+
+    public void setMaxRedemptions(Integer maxRedemptions) {
+        CouponValidator.system().validateMaxRedemptions(maxRedemptions);
+        this.maxRedemptions = maxRedemptions;
+    }
+
+    public int getRedemptionCount() {
+        return redemptionCount;
+    }
+
+    public int getRedemptionsReserved() {
+        return redemptionsReserved;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
     public Coupon(Long id, String code, String description, BigDecimal discountValue, Timestamp expirationDate, CouponStatus status, boolean published) {
+        this(id, code, description, discountValue, expirationDate, status, published, CouponValidator.system());
+    }
+
+    public Coupon(Long id, String code, String description, BigDecimal discountValue, Timestamp expirationDate, CouponStatus status, boolean published, CouponValidator validator) {
         this.id = id;
         this.code = code;
         this.description = description;
@@ -102,7 +151,7 @@ public class Coupon {
         this.status = status;
         this.published = published;
         this.redeemed = false;
-        validate();
+        validate(validator);
     }
 
     public void delete() {
@@ -112,38 +161,43 @@ public class Coupon {
         this.status = CouponStatus.DELETED;
     }
 
-    private void validate(){
-        validateAndNormalizeCode();
-        validateDiscountValue();
-        validateExpirationDate();
+    public void redeem() {
+        if (this.status == CouponStatus.DELETED) {
+            throw new CouponNotRedeemableException("coupon is deleted");
+        }
+        if (this.redeemed) {
+            throw new CouponNotRedeemableException("coupon is already redeemed");
+        }
+        if (this.status != CouponStatus.ACTIVE) {
+            throw new CouponNotRedeemableException("coupon is not active");
+        }
+        if (this.expirationDate.before(Timestamp.from(Instant.now()))) {
+            throw new CouponNotRedeemableException("coupon is expired");
+        }
+        this.redeemed = true;
+    }
+
+    private void validate(CouponValidator validator) {
+        this.code = validator.validateCode(this.code);
+        validator.validateDiscountValue(this.discountValue);
+        validator.validateExpirationDate(this.expirationDate);
     }
 
     // Coupon entity
     public void validateAndNormalizeCode() {
-        String normalizedCode = this.code.replaceAll("[^a-zA-Z0-9]", "");
+        this.code = CouponValidator.system().validateCode(this.code);
+    }
 
-        if (normalizedCode.length() != 6) {
-            throw new InvalidCouponException(
-                    "code must have exactly 6 characters"
-            );
-        }
-        this.code = normalizedCode;
+    // lookups by code must strip the same characters the constructor does
+    public static String normalizeCode(String code) {
+        return CouponValidator.system().normalizeCode(code);
     }
 
     public void validateExpirationDate() {
-        Timestamp now = Timestamp.from(Instant.now());
-
-        if (this.expirationDate.before(now)) {
-            throw new InvalidCouponException("expiration date cannot be in the past");
-        }
+        CouponValidator.system().validateExpirationDate(this.expirationDate);
     }
 
     public void validateDiscountValue() {
-        if (this.discountValue.compareTo(new BigDecimal("0.5")) < 0) {
-            throw new InvalidCouponException("minimum discount value is 0.5");
-        }
-        if (this.discountValue.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new InvalidCouponException("discount value must be greater than zero");
-        }
+        CouponValidator.system().validateDiscountValue(this.discountValue);
     }
 }
@@ -0,0 +1,61 @@
+package com.charlles.coupon_processor.entity;
+
+import com.charlles.coupon_processor.dto.CouponEventType;
+import jakarta.persistence.*;
+
+import java.sql.Timestamp;
+
+// append-only lifecycle history, rows are written in batches by CouponEventLog
+@Entity
+@Table(name = "coupon_events", indexes = {
+        @Index(name = "idx_coupon_events_coupon_id_id", columnList = "couponId, id")
+})
+public class CouponEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "coupon_events_seq")
+    @SequenceGenerator(name = "coupon_events_seq", sequenceName = "coupon_events_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long couponId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private CouponEventType type;
+
+    private String detail;
+
+    @Column(nullable = false)
+    private Timestamp occurredAt;
+
+    protected CouponEvent() {
+    }
+
+    public CouponEvent(Long couponId, CouponEventType type, String detail, Timestamp occurredAt) {
+        this.couponId = couponId;
+        this.type = type;
+        this.detail = detail;
+        this.occurredAt = occurredAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getCouponId() {
+        return couponId;
+    }
+
+    public CouponEventType getType() {
+        return type;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public Timestamp getOccurredAt() {
+        return occurredAt;
+    }
+}
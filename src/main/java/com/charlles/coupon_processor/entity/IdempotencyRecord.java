@@ -0,0 +1,61 @@
+package com.charlles.coupon_processor.entity;
+
+import jakarta.persistence.*;
+
+import java.sql.Timestamp;
+
+// response of a request sent with an Idempotency-Key, replayed on retries until it expires
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+        @Index(name = "idx_idempotency_keys_expires_at", columnList = "expiresAt")
+})
+public class IdempotencyRecord {
+
+    @Id
+    @Column(name = "idempotency_key", length = 300)
+    private String key;
+
+    @Column(length = 64)
+    private String requestFingerprint;
+
+    @Lob
+    @Column(nullable = false)
+    private String response;
+
+    @Column(nullable = false)
+    private Timestamp createdAt;
+
+    @Column(nullable = false)
+    private Timestamp expiresAt;
+
+    protected IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String key, String requestFingerprint, String response, Timestamp createdAt, Timestamp expiresAt) {
+        this.key = key;
+        this.requestFingerprint = requestFingerprint;
+        this.response = response;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getRequestFingerprint() {
+        return requestFingerprint;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public Timestamp getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,7 @@
+package com.charlles.coupon_processor.exception;
+
+public class CouponCodeAlreadyExistsException extends RuntimeException {
+    public CouponCodeAlreadyExistsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.charlles.coupon_processor.exception;
+
+public class CouponImportJobNotFoundException extends RuntimeException {
+    public CouponImportJobNotFoundException(String message) {
+        super(message);
+    }
+}
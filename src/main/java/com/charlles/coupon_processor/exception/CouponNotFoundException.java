@@ -1,7 +1,8 @@
 package com.charlles.coupon_processor.exception;
 
 public class CouponNotFoundException extends RuntimeException {
+    // not found is an expected outcome for guessed ids and codes, skip the stack trace
     public CouponNotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -0,0 +1,7 @@
+package com.charlles.coupon_processor.exception;
+
+public class CouponNotRedeemableException extends RuntimeException {
+    public CouponNotRedeemableException(String message) {
+        super(message);
+    }
+}
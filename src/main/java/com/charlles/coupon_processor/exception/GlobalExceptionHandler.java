@@ -1,17 +1,48 @@
 package com.charlles.coupon_processor.exception;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
+    private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
 
+    private final Counter validationErrors;
+    private final Counter invalidCoupon;
+    private final Counter couponNotFound;
+    private final Counter importJobNotFound;
+    private final Counter unexpectedErrors;
+    private final Counter couponAlreadyDeleted;
+    private final Counter couponNotRedeemable;
+    private final Counter couponCodeAlreadyExists;
+    private final Counter rateLimited;
+    private final Counter idempotencyKeyMismatch;
+
+    public GlobalExceptionHandler(MeterRegistry meterRegistry) {
+        this.validationErrors = errors(meterRegistry, "validation", 400);
+        this.invalidCoupon = errors(meterRegistry, "invalid_coupon", 400);
+        this.couponNotFound = errors(meterRegistry, "coupon_not_found", 404);
+        this.importJobNotFound = errors(meterRegistry, "import_job_not_found", 404);
+        this.unexpectedErrors = errors(meterRegistry, "unexpected", 500);
+        this.couponAlreadyDeleted = errors(meterRegistry, "coupon_already_deleted", 409);
+        this.couponNotRedeemable = errors(meterRegistry, "coupon_not_redeemable", 409);
+        this.couponCodeAlreadyExists = errors(meterRegistry, "coupon_code_already_exists", 409);
+        this.rateLimited = errors(meterRegistry, "rate_limited", 429);
+        this.idempotencyKeyMismatch = errors(meterRegistry, "idempotency_key_mismatch", 422);
+    }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponseDTO> handleValidation(
             MethodArgumentNotValidException ex) {
+        validationErrors.increment();
 
         String message = ex.getBindingResult()
                 .getFieldErrors()
@@ -24,29 +55,91 @@ public class GlobalExceptionHandler {
                 .body(new ErrorResponseDTO(400, message));
     }
 
+    // constraints declared on controller parameters instead of on a request body
+    @ExceptionHandler(HandlerMethodValidationException.class)
+    public ResponseEntity<ErrorResponseDTO> handleMethodValidation(HandlerMethodValidationException ex) {
+        validationErrors.increment();
+
+        String message = ex.getAllErrors()
+                .stream()
+                .map(err -> err.getDefaultMessage())
+                .findFirst()
+                .orElse("validation error");
+
+        return ResponseEntity.badRequest()
+                .body(new ErrorResponseDTO(400, message));
+    }
+
     @ExceptionHandler(InvalidCouponException.class)
     public ResponseEntity<ErrorResponseDTO> handleInvalidCoupon(InvalidCouponException ex) {
+        invalidCoupon.increment();
         return ResponseEntity.badRequest()
                 .body(new ErrorResponseDTO(400, ex.getMessage()));
     }
 
     @ExceptionHandler(CouponNotFoundException.class)
     public ResponseEntity<ErrorResponseDTO> handleCouponNotFound(CouponNotFoundException ex) {
+        couponNotFound.increment();
+        return ResponseEntity.status(404)
+                .body(new ErrorResponseDTO(404, ex.getMessage()));
+    }
+
+    @ExceptionHandler(CouponImportJobNotFoundException.class)
+    public ResponseEntity<ErrorResponseDTO> handleImportJobNotFound(CouponImportJobNotFoundException ex) {
+        importJobNotFound.increment();
         return ResponseEntity.status(404)
                 .body(new ErrorResponseDTO(404, ex.getMessage()));
     }
 
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponseDTO> handleGenericException(Exception ex) {
+        unexpectedErrors.increment();
+        log.error("unhandled exception", ex);
         return ResponseEntity.status(500)
                 .body(new ErrorResponseDTO(500, "internal server error"));
     }
 
     @ExceptionHandler(CouponAlreadyDeletedException.class)
     public ResponseEntity<ErrorResponseDTO> handleCouponAlreadyDeleted(CouponAlreadyDeletedException ex) {
+        couponAlreadyDeleted.increment();
+        return ResponseEntity.status(409)
+                .body(new ErrorResponseDTO(409, ex.getMessage()));
+    }
+
+    @ExceptionHandler(CouponNotRedeemableException.class)
+    public ResponseEntity<ErrorResponseDTO> handleCouponNotRedeemable(CouponNotRedeemableException ex) {
+        couponNotRedeemable.increment();
+        return ResponseEntity.status(409)
+                .body(new ErrorResponseDTO(409, ex.getMessage()));
+    }
+
+    @ExceptionHandler(CouponCodeAlreadyExistsException.class)
+    public ResponseEntity<ErrorResponseDTO> handleCouponCodeAlreadyExists(CouponCodeAlreadyExistsException ex) {
+        couponCodeAlreadyExists.increment();
         return ResponseEntity.status(409)
                 .body(new ErrorResponseDTO(409, ex.getMessage()));
     }
 
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<ErrorResponseDTO> handleRateLimitExceeded(RateLimitExceededException ex) {
+        rateLimited.increment();
+        return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .body(new ErrorResponseDTO(429, ex.getMessage()));
+    }
 
+    @ExceptionHandler(IdempotencyKeyMismatchException.class)
+    public ResponseEntity<ErrorResponseDTO> handleIdempotencyKeyMismatch(IdempotencyKeyMismatchException ex) {
+        idempotencyKeyMismatch.increment();
+        return ResponseEntity.status(422)
+                .body(new ErrorResponseDTO(422, ex.getMessage()));
+    }
+
+    private static Counter errors(MeterRegistry meterRegistry, String handler, int status) {
+        return Counter.builder("coupon.errors")
+                .description("responses produced by GlobalExceptionHandler")
+                .tag("handler", handler)
+                .tag("status", Integer.toString(status))
+                .register(meterRegistry);
+    }
 }
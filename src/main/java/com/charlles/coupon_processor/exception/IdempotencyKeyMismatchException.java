@@ -0,0 +1,7 @@
+package com.charlles.coupon_processor.exception;
+
+public class IdempotencyKeyMismatchException extends RuntimeException {
+    public IdempotencyKeyMismatchException(String message) {
+        super(message);
+    }
+}
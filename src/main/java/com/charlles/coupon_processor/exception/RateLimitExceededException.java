@@ -0,0 +1,16 @@
+package com.charlles.coupon_processor.exception;
+
+public class RateLimitExceededException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    // thrown for every rejected request of a client that is hammering the api,
+    // the stack trace would only add cost
+    public RateLimitExceededException(long retryAfterSeconds) {
+        super("too many requests, retry after " + retryAfterSeconds + "s", null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
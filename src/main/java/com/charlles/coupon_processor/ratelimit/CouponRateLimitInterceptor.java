@@ -0,0 +1,78 @@
+package com.charlles.coupon_processor.ratelimit;
+
+import com.charlles.coupon_processor.exception.RateLimitExceededException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.concurrent.TimeUnit;
+
+// runs before the handler so a rejected request never reaches CouponService. clients
+// are told apart by key-header when it is configured and sent, by remote address
+// otherwise. an unauthenticated header lets a bot pick a fresh bucket per request,
+// only point key-header at something a gateway has already checked
+@Component
+public class CouponRateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String LOOKUPS = CouponRateLimitInterceptor.class.getName() + ".lookups";
+
+    private final CouponRateLimiter rateLimiter;
+    private final String keyHeader;
+
+    public CouponRateLimitInterceptor(CouponRateLimiter rateLimiter,
+                                      @Value("${coupon.rate-limit.key-header:}") String keyHeader) {
+        this.rateLimiter = rateLimiter;
+        this.keyHeader = keyHeader.isBlank() ? null : keyHeader;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!isRateLimited(handler)) {
+            return true;
+        }
+        long wait = rateLimiter.tryAcquire(client(request));
+        if (wait > 0) {
+            throw new RateLimitExceededException(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999L)));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!isRateLimited(handler)) {
+            return;
+        }
+        if (request.getAttribute(LOOKUPS) instanceof Lookups lookups) {
+            rateLimiter.charge(client(request), lookups.extra(), lookups.notFound());
+        } else if (response.getStatus() == HttpStatus.NOT_FOUND.value()) {
+            rateLimiter.notFound(client(request));
+        }
+    }
+
+    // for handlers that look up many codes in one request, which answers 200 even when
+    // some are missing. preHandle already took the token of the first lookup
+    public static void chargeLookups(HttpServletRequest request, int lookups, int notFound) {
+        request.setAttribute(LOOKUPS, new Lookups(Math.max(0, lookups - 1), notFound));
+    }
+
+    private String client(HttpServletRequest request) {
+        if (keyHeader != null) {
+            String key = request.getHeader(keyHeader);
+            if (key != null && !key.isBlank()) {
+                return "key:" + key;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static boolean isRateLimited(Object handler) {
+        return handler instanceof HandlerMethod method && method.hasMethodAnnotation(RateLimited.class);
+    }
+
+    private record Lookups(int extra, int notFound) {
+    }
+}
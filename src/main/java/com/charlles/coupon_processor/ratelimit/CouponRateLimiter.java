@@ -0,0 +1,66 @@
+package com.charlles.coupon_processor.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// per-client token bucket in front of the coupon lookups. every request takes one
+// token and a lookup that ends in 404 takes not-found-penalty more, so a client
+// guessing codes runs out far sooner than one reading coupons that exist
+@Component
+public class CouponRateLimiter {
+
+    private final TokenBuckets buckets;
+    private final boolean enabled;
+    private final int notFoundPenalty;
+    private final Counter rejected;
+
+    public CouponRateLimiter(MeterRegistry meterRegistry,
+                             @Value("${coupon.rate-limit.enabled:true}") boolean enabled,
+                             @Value("${coupon.rate-limit.capacity:100}") int capacity,
+                             @Value("${coupon.rate-limit.tokens-per-second:50}") double tokensPerSecond,
+                             @Value("${coupon.rate-limit.not-found-penalty:4}") int notFoundPenalty) {
+        this.buckets = new TokenBuckets(capacity, tokensPerSecond, System::nanoTime);
+        this.enabled = enabled;
+        this.notFoundPenalty = notFoundPenalty;
+        this.rejected = Counter.builder("coupon.rate.limited")
+                .description("coupon lookups rejected with 429")
+                .register(meterRegistry);
+        Gauge.builder("coupon.rate.limit.clients", buckets, TokenBuckets::size)
+                .description("clients with a token bucket that is not full")
+                .register(meterRegistry);
+    }
+
+    // 0 when the request may go on, otherwise the nanoseconds until it could
+    public long tryAcquire(String client) {
+        if (!enabled) {
+            return 0;
+        }
+        long wait = buckets.tryAcquire(client, 1);
+        if (wait > 0) {
+            rejected.increment();
+        }
+        return wait;
+    }
+
+    public void notFound(String client) {
+        charge(client, 0, 1);
+    }
+
+    // a bulk request pays for its lookups after the fact, like the single lookups it
+    // replaces would have. the debt makes the client wait before its next request
+    public void charge(String client, int lookups, int notFound) {
+        long tokens = lookups + (long) notFound * notFoundPenalty;
+        if (enabled && tokens > 0) {
+            buckets.charge(client, (int) Math.min(Integer.MAX_VALUE, tokens));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${coupon.rate-limit.evict-interval:PT1M}")
+    public void evictIdle() {
+        buckets.evictIdle();
+    }
+}
@@ -0,0 +1,68 @@
+package com.charlles.coupon_processor.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// one token bucket per client stored as a single long, the time at which the bucket
+// will be full again (gcra). taking a token is a map lookup and one compare-and-set,
+// no lock and no timer per client. a bucket that is full again holds no information
+// and can be dropped
+class TokenBuckets {
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final LongSupplier nanoClock;
+    private final long nanosPerToken;
+    private final long burstNanos;
+
+    TokenBuckets(int capacity, double tokensPerSecond, LongSupplier nanoClock) {
+        if (capacity < 1 || tokensPerSecond <= 0) {
+            throw new IllegalArgumentException("capacity and tokens per second must be positive");
+        }
+        this.nanoClock = nanoClock;
+        this.nanosPerToken = Math.max(1, (long) (1_000_000_000L / tokensPerSecond));
+        this.burstNanos = capacity * nanosPerToken;
+    }
+
+    // 0 when the tokens were taken, otherwise how long until they will be available
+    long tryAcquire(String client, int tokens) {
+        long now = nanoClock.getAsLong();
+        AtomicLong fullAt = bucket(client, now);
+        long cost = tokens * nanosPerToken;
+        while (true) {
+            long current = fullAt.get();
+            long next = (current - now > 0 ? current : now) + cost;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // takes tokens even from an empty bucket, it only goes as far into debt as the
+    // requests that were let through allow
+    void charge(String client, int tokens) {
+        long now = nanoClock.getAsLong();
+        long cost = tokens * nanosPerToken;
+        bucket(client, now).getAndUpdate(current -> (current - now > 0 ? current : now) + cost);
+    }
+
+    // a request racing with the sweep can lose its token when its bucket is removed
+    // under it, the next request starts from a full bucket
+    void evictIdle() {
+        long now = nanoClock.getAsLong();
+        buckets.values().removeIf(fullAt -> fullAt.get() - now <= 0);
+    }
+
+    int size() {
+        return buckets.size();
+    }
+
+    private AtomicLong bucket(String client, long now) {
+        AtomicLong fullAt = buckets.get(client);
+        return fullAt != null ? fullAt : buckets.computeIfAbsent(client, key -> new AtomicLong(now));
+    }
+}
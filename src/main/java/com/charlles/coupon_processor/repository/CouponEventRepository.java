@@ -0,0 +1,17 @@
+package com.charlles.coupon_processor.repository;
+
+import com.charlles.coupon_processor.dto.CouponEventDTO;
+import com.charlles.coupon_processor.entity.CouponEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface CouponEventRepository extends JpaRepository<CouponEvent, Long> {
+
+    @Query("""
+            select new com.charlles.coupon_processor.dto.CouponEventDTO(e.type, e.detail, e.occurredAt)
+            from CouponEvent e where e.couponId = :couponId order by e.occurredAt, e.id""")
+    List<CouponEventDTO> findHistory(@Param("couponId") Long couponId);
+}
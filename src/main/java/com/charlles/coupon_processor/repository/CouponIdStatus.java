@@ -0,0 +1,5 @@
+package com.charlles.coupon_processor.repository;
+
+import com.charlles.coupon_processor.dto.CouponStatus;
+
+public record CouponIdStatus(Long id, CouponStatus status) {}
@@ -0,0 +1,3 @@
+package com.charlles.coupon_processor.repository;
+
+public record CouponKey(Long id, String code) {}
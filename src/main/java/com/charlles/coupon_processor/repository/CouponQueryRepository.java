@@ -0,0 +1,16 @@
+package com.charlles.coupon_processor.repository;
+
+import com.charlles.coupon_processor.dto.CouponBulkRequestDTO;
+import com.charlles.coupon_processor.dto.CouponFilter;
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+
+import java.util.List;
+
+public interface CouponQueryRepository {
+
+    // keyset page ordered by id, only rows with id greater than afterId
+    List<CouponResponseDTO> findPage(CouponFilter filter, Long afterId, int limit);
+
+    // keyset chunk of the coupons a bulk filter selects, the code prefix must already be normalized
+    List<CouponIdStatus> findIdStatuses(CouponBulkRequestDTO filter, Long afterId, int limit);
+}
@@ -0,0 +1,102 @@
+package com.charlles.coupon_processor.repository;
+
+import com.charlles.coupon_processor.dto.CouponBulkRequestDTO;
+import com.charlles.coupon_processor.dto.CouponFilter;
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.List;
+
+class CouponQueryRepositoryImpl implements CouponQueryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // only the predicates that are set end up in the query, so the database can
+    // pick the matching composite index instead of evaluating "is null or" guards
+    @Override
+    public List<CouponResponseDTO> findPage(CouponFilter filter, Long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("""
+                select new com.charlles.coupon_processor.dto.CouponResponseDTO(
+                    cast(c.id as String), c.code, c.description, c.discountValue,
+                    c.expirationDate, c.status, c.published, c.redeemed,
+                    c.maxRedemptions, c.redemptionCount, c.version)
+                from Coupon c where c.id > :afterId""");
+        if (filter.status() != null) {
+            jpql.append(" and c.status = :status");
+        }
+        if (filter.published() != null) {
+            jpql.append(" and c.published = :published");
+        }
+        if (filter.redeemed() != null) {
+            jpql.append(" and c.redeemed = :redeemed");
+        }
+        if (filter.expiresAfter() != null) {
+            jpql.append(" and c.expirationDate >= :expiresAfter");
+        }
+        if (filter.expiresBefore() != null) {
+            jpql.append(" and c.expirationDate < :expiresBefore");
+        }
+        jpql.append(" order by c.id");
+
+        TypedQuery<CouponResponseDTO> query = entityManager.createQuery(jpql.toString(), CouponResponseDTO.class)
+                .setParameter("afterId", afterId == null ? 0L : afterId)
+                .setMaxResults(limit);
+        if (filter.status() != null) {
+            query.setParameter("status", filter.status());
+        }
+        if (filter.published() != null) {
+            query.setParameter("published", filter.published());
+        }
+        if (filter.redeemed() != null) {
+            query.setParameter("redeemed", filter.redeemed());
+        }
+        if (filter.expiresAfter() != null) {
+            query.setParameter("expiresAfter", filter.expiresAfter());
+        }
+        if (filter.expiresBefore() != null) {
+            query.setParameter("expiresBefore", filter.expiresBefore());
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    public List<CouponIdStatus> findIdStatuses(CouponBulkRequestDTO filter, Long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("""
+                select new com.charlles.coupon_processor.repository.CouponIdStatus(c.id, c.status)
+                from Coupon c where c.id > :afterId""");
+        if (filter.codePrefix() != null) {
+            jpql.append(" and c.code like :codePrefix");
+        }
+        if (filter.status() != null) {
+            jpql.append(" and c.status = :status");
+        }
+        if (filter.expiresAfter() != null) {
+            jpql.append(" and c.expirationDate >= :expiresAfter");
+        }
+        if (filter.expiresBefore() != null) {
+            jpql.append(" and c.expirationDate < :expiresBefore");
+        }
+        jpql.append(" order by c.id");
+
+        TypedQuery<CouponIdStatus> query = entityManager.createQuery(jpql.toString(), CouponIdStatus.class)
+                .setParameter("afterId", afterId == null ? 0L : afterId)
+                .setMaxResults(limit);
+        if (filter.codePrefix() != null) {
+            // normalized codes are letters and digits only, nothing to escape in the pattern
+            query.setParameter("codePrefix", filter.codePrefix() + "%");
+        }
+        if (filter.status() != null) {
+            query.setParameter("status", filter.status());
+        }
+        if (filter.expiresAfter() != null) {
+            query.setParameter("expiresAfter", filter.expiresAfter());
+        }
+        if (filter.expiresBefore() != null) {
+            query.setParameter("expiresBefore", filter.expiresBefore());
+        }
+        return query.getResultList();
+    }
+}
@@ -1,10 +1,129 @@
 package com.charlles.coupon_processor.repository;
 
+import com.charlles.coupon_processor.dto.CouponStatus;
 import com.charlles.coupon_processor.entity.Coupon;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface CouponRepository extends JpaRepository<Coupon, Long> {
+public interface CouponRepository extends JpaRepository<Coupon, Long>, CouponQueryRepository {
+
+    Optional<Coupon> findByCode(String code);
+
+    @Query("select c.code from Coupon c where c.code in :codes")
+    List<String> findExistingCodes(@Param("codes") Collection<String> codes);
+
+    // unordered so the scan of idx_coupons_status_expiration_date stops at the limit instead
+    // of sorting every expired row, each swept chunk leaves the status anyway
+    @Query("select c.id from Coupon c where c.status = :status and c.expirationDate < :now")
+    List<Long> findExpiredIds(@Param("status") CouponStatus status, @Param("now") Timestamp now, Limit limit);
+
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update Coupon c set c.status = :target, c.version = c.version + 1 where c.id in :ids and c.status = :status")
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("status") CouponStatus status,
+                     @Param("target") CouponStatus target);
+
+    @Query("select new com.charlles.coupon_processor.repository.CouponIdStatus(c.id, c.status) from Coupon c where c.id in :ids")
+    List<CouponIdStatus> findIdStatuses(@Param("ids") Collection<Long> ids);
+
+    // the status guards turn a concurrent delete or change into 0 rows instead of
+    // overwriting it, deleted coupons are never brought back
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("""
+            update Coupon c set c.status = com.charlles.coupon_processor.dto.CouponStatus.DELETED, c.version = c.version + 1
+            where c.id in :ids and c.status <> com.charlles.coupon_processor.dto.CouponStatus.DELETED""")
+    int softDelete(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("""
+            update Coupon c set c.status = :target, c.version = c.version + 1
+            where c.id in :ids and c.status <> :target and c.status <> com.charlles.coupon_processor.dto.CouponStatus.DELETED""")
+    int changeStatus(@Param("ids") Collection<Long> ids, @Param("target") CouponStatus target);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select c from Coupon c order by c.id")
+    Stream<Coupon> streamAll();
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select c from Coupon c where c.status = :status order by c.id")
+    Stream<Coupon> streamByStatus(@Param("status") CouponStatus status);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.charlles.coupon_processor.repository.CouponKey(c.id, c.code) from Coupon c")
+    Stream<CouponKey> streamAllKeys();
+
+    // single conditional update, the row lock is held only for the statement and
+    // concurrent callers see 0 rows updated instead of redeeming twice. multi-use
+    // coupons never match, they go through CouponRedemptionLimiter
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("""
+            update Coupon c set c.redeemed = true, c.version = c.version + 1
+            where c.id = :id and c.redeemed = false and c.status = :status and c.expirationDate > :now
+            and c.maxRedemptions is null""")
+    int redeemById(@Param("id") Long id, @Param("status") CouponStatus status, @Param("now") Timestamp now);
+
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("""
+            update Coupon c set c.redeemed = true, c.version = c.version + 1
+            where c.code = :code and c.redeemed = false and c.status = :status and c.expirationDate > :now
+            and c.maxRedemptions is null""")
+    int redeemByCode(@Param("code") String code, @Param("status") CouponStatus status, @Param("now") Timestamp now);
+
+    // enough for an etag check, the entity is not loaded
+    @Query("""
+            select new com.charlles.coupon_processor.repository.CouponVersion(c.version, c.status, c.expirationDate)
+            from Coupon c where c.id = :id""")
+    Optional<CouponVersion> findVersion(@Param("id") Long id);
+
+    @Query("select c.maxRedemptions - c.redemptionsReserved from Coupon c where c.id = :id")
+    Optional<Integer> findUnreservedRedemptions(@Param("id") Long id);
+
+    // the guard is what keeps every instance together under maxRedemptions. reserving
+    // and releasing change nothing a client sees, so they leave the version and the etag alone
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("""
+            update Coupon c set c.redemptionsReserved = c.redemptionsReserved + :permits
+            where c.id = :id and c.redemptionsReserved + :permits <= c.maxRedemptions""")
+    int reserveRedemptions(@Param("id") Long id, @Param("permits") int permits);
+
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("update Coupon c set c.redemptionsReserved = c.redemptionsReserved - :permits where c.id = :id")
+    int releaseRedemptions(@Param("id") Long id, @Param("permits") int permits);
 
-}
\ No newline at end of file
+    @Transactional
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("""
+            update Coupon c set c.redemptionCount = c.redemptionCount + :redemptions,
+            c.redeemed = case when c.redemptionCount + :redemptions >= c.maxRedemptions then true else false end,
+            c.version = c.version + 1
+            where c.id = :id""")
+    int addRedemptions(@Param("id") Long id, @Param("redemptions") int redemptions);
+}
@@ -0,0 +1,8 @@
+package com.charlles.coupon_processor.repository;
+
+import com.charlles.coupon_processor.dto.CouponStatus;
+
+import java.sql.Timestamp;
+
+public record CouponVersion(long version, CouponStatus status, Timestamp expirationDate) {
+}
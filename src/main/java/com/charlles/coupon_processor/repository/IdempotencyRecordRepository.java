@@ -0,0 +1,22 @@
+package com.charlles.coupon_processor.repository;
+
+import com.charlles.coupon_processor.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.Optional;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    @Query("select r from IdempotencyRecord r where r.key = :key and r.expiresAt > :now")
+    Optional<IdempotencyRecord> findValid(@Param("key") String key, @Param("now") Timestamp now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.expiresAt <= :now")
+    int deleteExpired(@Param("now") Timestamp now);
+}
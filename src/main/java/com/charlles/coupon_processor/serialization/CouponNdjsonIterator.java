@@ -0,0 +1,59 @@
+package com.charlles.coupon_processor.serialization;
+
+import com.charlles.coupon_processor.dto.CouponDTO;
+import com.charlles.coupon_processor.exception.InvalidCouponException;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// one coupon per non blank line, read as the batch asks for it. every line is parsed
+// on its own, so a malformed one is thrown from next as an InvalidCouponException
+// that the batch rejects at its index, and the lines after it are still read
+public class CouponNdjsonIterator implements Iterator<CouponDTO> {
+
+    private final BufferedReader reader;
+    private final ObjectReader couponReader;
+    private String line;
+
+    public CouponNdjsonIterator(BufferedReader reader, ObjectReader couponReader) {
+        this.reader = reader;
+        this.couponReader = couponReader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (line == null) {
+                String next = reader.readLine();
+                if (next == null) {
+                    return false;
+                }
+                if (!next.isBlank()) {
+                    line = next;
+                }
+            }
+            return true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("could not read ndjson body", ex);
+        }
+    }
+
+    @Override
+    public CouponDTO next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String current = line;
+        line = null;
+        try {
+            return couponReader.readValue(current);
+        } catch (JacksonException ex) {
+            throw new InvalidCouponException("malformed ndjson line: " + ex.getOriginalMessage());
+        }
+    }
+}
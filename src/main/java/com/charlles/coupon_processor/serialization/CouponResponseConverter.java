@@ -0,0 +1,68 @@
+package com.charlles.coupon_processor.serialization;
+
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+
+// writes CouponResponseDTO bodies ahead of the generic jackson converter. a response
+// is an immutable record and CouponCache hands out the same instance until the
+// coupon changes, so its json is kept by identity and written as is on the next
+// request. keys are weak, the bytes go away together with the cached response
+@Component
+public class CouponResponseConverter extends AbstractHttpMessageConverter<CouponResponseDTO> {
+
+    private final ObjectWriter writer;
+    private final Cache<CouponResponseDTO, byte[]> json;
+
+    public CouponResponseConverter(ObjectMapper objectMapper,
+                                   @Value("${coupon.serialization.cache-bytes:true}") boolean cacheBytes,
+                                   @Value("${coupon.serialization.maximum-size:10000}") long maximumSize) {
+        super(MediaType.APPLICATION_JSON);
+        this.writer = objectMapper.writerFor(CouponResponseDTO.class);
+        this.json = cacheBytes ? Caffeine.newBuilder().weakKeys().maximumSize(maximumSize).build() : null;
+    }
+
+    public byte[] toJson(CouponResponseDTO coupon) {
+        return json == null ? writer.writeValueAsBytes(coupon) : json.get(coupon, writer::writeValueAsBytes);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CouponResponseDTO.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected CouponResponseDTO readInternal(Class<? extends CouponResponseDTO> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("coupon responses are write only", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(CouponResponseDTO coupon, MediaType contentType) {
+        return json == null ? null : (long) toJson(coupon).length;
+    }
+
+    @Override
+    protected void writeInternal(CouponResponseDTO coupon, HttpOutputMessage outputMessage) throws IOException {
+        if (json == null) {
+            writer.writeValue(outputMessage.getBody(), coupon);
+        } else {
+            outputMessage.getBody().write(toJson(coupon));
+        }
+    }
+}
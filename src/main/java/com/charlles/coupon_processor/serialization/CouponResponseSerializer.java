@@ -0,0 +1,71 @@
+package com.charlles.coupon_processor.serialization;
+
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import org.springframework.boot.jackson.JacksonComponent;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.SerializableString;
+import tools.jackson.core.io.SerializedString;
+import tools.jackson.databind.SerializationContext;
+import tools.jackson.databind.ValueSerializer;
+
+// writes the same json as the reflective record serializer, property by property
+// with pre-encoded names and no per-property serializer lookup. dates still go
+// through the context so spring.jackson date settings keep applying
+@JacksonComponent
+public class CouponResponseSerializer extends ValueSerializer<CouponResponseDTO> {
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString CODE = new SerializedString("code");
+    private static final SerializableString DESCRIPTION = new SerializedString("description");
+    private static final SerializableString DISCOUNT_VALUE = new SerializedString("discountValue");
+    private static final SerializableString EXPIRATION_DATE = new SerializedString("expirationDate");
+    private static final SerializableString STATUS = new SerializedString("status");
+    private static final SerializableString PUBLISHED = new SerializedString("published");
+    private static final SerializableString REDEEMED = new SerializedString("redeemed");
+    private static final SerializableString MAX_REDEMPTIONS = new SerializedString("maxRedemptions");
+    private static final SerializableString REDEMPTION_COUNT = new SerializedString("redemptionCount");
+    private static final SerializableString VERSION = new SerializedString("version");
+
+    @Override
+    public void serialize(CouponResponseDTO coupon, JsonGenerator gen, SerializationContext ctxt) {
+        gen.writeStartObject(coupon);
+        gen.writeName(ID);
+        gen.writeString(coupon.id());
+        gen.writeName(CODE);
+        gen.writeString(coupon.code());
+        gen.writeName(DESCRIPTION);
+        gen.writeString(coupon.description());
+        gen.writeName(DISCOUNT_VALUE);
+        if (coupon.discountValue() == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(coupon.discountValue());
+        }
+        gen.writeName(EXPIRATION_DATE);
+        if (coupon.expirationDate() == null) {
+            gen.writeNull();
+        } else {
+            ctxt.defaultSerializeDateValue(coupon.expirationDate(), gen);
+        }
+        gen.writeName(STATUS);
+        if (coupon.status() == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(coupon.status().name());
+        }
+        gen.writeName(PUBLISHED);
+        gen.writeBoolean(coupon.published());
+        gen.writeName(REDEEMED);
+        gen.writeBoolean(coupon.redeemed());
+        gen.writeName(MAX_REDEMPTIONS);
+        if (coupon.maxRedemptions() == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(coupon.maxRedemptions());
+        }
+        gen.writeName(REDEMPTION_COUNT);
+        gen.writeNumber(coupon.redemptionCount());
+        gen.writeName(VERSION);
+        gen.writeNumber(coupon.version());
+        gen.writeEndObject();
+    }
+}
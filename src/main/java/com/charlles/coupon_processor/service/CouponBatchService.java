@@ -0,0 +1,174 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.cache.CouponMembershipFilter;
+import com.charlles.coupon_processor.dto.CouponBatchItemDTO;
+import com.charlles.coupon_processor.dto.CouponBatchResponseDTO;
+import com.charlles.coupon_processor.dto.CouponDTO;
+import com.charlles.coupon_processor.dto.CouponEventType;
+import com.charlles.coupon_processor.dto.CouponStatus;
+import com.charlles.coupon_processor.entity.Coupon;
+import com.charlles.coupon_processor.exception.InvalidCouponException;
+import com.charlles.coupon_processor.repository.CouponRepository;
+import com.charlles.coupon_processor.validation.CouponValidator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+@Service
+public class CouponBatchService {
+    private static final Logger log = LoggerFactory.getLogger(CouponBatchService.class);
+
+    private final CouponRepository couponRepository;
+    private final CouponMembershipFilter membershipFilter;
+    private final Validator validator;
+    private final CouponValidator couponValidator;
+    private final CouponCodePool codePool;
+    private final CouponEventLog eventLog;
+    private final int chunkSize;
+
+    public CouponBatchService(CouponRepository couponRepository,
+                              CouponMembershipFilter membershipFilter,
+                              Validator validator,
+                              CouponValidator couponValidator,
+                              CouponCodePool codePool,
+                              CouponEventLog eventLog,
+                              @Value("${coupon.batch.chunk-size:500}") int chunkSize) {
+        this.couponRepository = couponRepository;
+        this.membershipFilter = membershipFilter;
+        this.validator = validator;
+        this.couponValidator = couponValidator;
+        this.codePool = codePool;
+        this.eventLog = eventLog;
+        this.chunkSize = chunkSize;
+    }
+
+    // every chunk is persisted in its own transaction (saveAll), with sequence ids
+    // hibernate can group the inserts into jdbc batches of hibernate.jdbc.batch_size.
+    // earlier chunks are already committed when a later item turns out to be invalid,
+    // so an item the iterator cannot read is rejected at its index like any other
+    public CouponBatchResponseDTO createAll(Iterator<CouponDTO> coupons) {
+        List<CouponBatchItemDTO> items = new ArrayList<>();
+        List<Coupon> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(chunkSize);
+        Set<String> seenCodes = new HashSet<>();
+        int index = 0;
+
+        while (coupons.hasNext()) {
+            try {
+                Coupon coupon = toEntity(coupons.next());
+                if (!seenCodes.add(coupon.getCode())) {
+                    throw new InvalidCouponException("duplicate code in batch: " + coupon.getCode());
+                }
+                chunk.add(coupon);
+                chunkIndexes.add(index);
+            } catch (InvalidCouponException ex) {
+                items.add(CouponBatchItemDTO.rejected(index, ex.getMessage()));
+            }
+            index++;
+
+            if (chunk.size() == chunkSize) {
+                saveChunk(chunk, chunkIndexes, items);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk(chunk, chunkIndexes, items);
+        }
+
+        items.sort((a, b) -> Integer.compare(a.index(), b.index()));
+        int accepted = (int) items.stream().filter(CouponBatchItemDTO::accepted).count();
+        return new CouponBatchResponseDTO(accepted, items.size() - accepted, items);
+    }
+
+    private void saveChunk(List<Coupon> chunk, List<Integer> chunkIndexes, List<CouponBatchItemDTO> items) {
+        // one indexed lookup per chunk keeps duplicates from failing the whole batch insert
+        Set<String> existingCodes = new HashSet<>(couponRepository.findExistingCodes(
+                chunk.stream().map(Coupon::getCode).toList()));
+
+        List<Coupon> pending = new ArrayList<>(chunk.size());
+        List<Integer> pendingIndexes = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            Coupon coupon = chunk.get(i);
+            if (existingCodes.contains(coupon.getCode())) {
+                items.add(CouponBatchItemDTO.rejected(chunkIndexes.get(i), "coupon code already exists: " + coupon.getCode()));
+            } else {
+                pending.add(coupon);
+                pendingIndexes.add(chunkIndexes.get(i));
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            try {
+                List<Coupon> saved = couponRepository.saveAll(pending);
+                for (int i = 0; i < saved.size(); i++) {
+                    membershipFilter.add(saved.get(i).getId(), saved.get(i).getCode());
+                    eventLog.publish(saved.get(i).getId(), CouponEventType.CREATED, "batch");
+                    items.add(CouponBatchItemDTO.accepted(pendingIndexes.get(i), saved.get(i).getId()));
+                }
+            } catch (DataAccessException ex) {
+                // a concurrent writer took one of the codes, retry one by one to isolate it
+                log.warn("could not persist coupon chunk of {} items, retrying individually", pending.size(), ex);
+                for (int i = 0; i < pending.size(); i++) {
+                    items.add(saveOne(pending.get(i), pendingIndexes.get(i)));
+                }
+            }
+        }
+        chunk.clear();
+        chunkIndexes.clear();
+    }
+
+    private CouponBatchItemDTO saveOne(Coupon coupon, int index) {
+        try {
+            // the failed chunk already assigned sequence ids, persist a fresh instance instead
+            Coupon fresh = new Coupon(
+                    null,
+                    coupon.getCode(),
+                    coupon.getDescription(),
+                    coupon.getDiscountValue(),
+                    coupon.getExpirationDate(),
+                    coupon.getStatus(),
+                    coupon.isPublished(),
+                    couponValidator);
+            fresh.setMaxRedemptions(coupon.getMaxRedemptions());
+            Coupon saved = couponRepository.save(fresh);
+            membershipFilter.add(saved.getId(), saved.getCode());
+            eventLog.publish(saved.getId(), CouponEventType.CREATED, "batch");
+            return CouponBatchItemDTO.accepted(index, saved.getId());
+        } catch (DataIntegrityViolationException ex) {
+            return CouponBatchItemDTO.rejected(index, "coupon code already exists: " + coupon.getCode());
+        } catch (DataAccessException | InvalidCouponException ex) {
+            return CouponBatchItemDTO.rejected(index, "could not persist coupon");
+        }
+    }
+
+    private Coupon toEntity(CouponDTO dto) {
+        if (dto == null) {
+            throw new InvalidCouponException("coupon cannot be null");
+        }
+        Set<ConstraintViolation<CouponDTO>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            throw new InvalidCouponException(violations.iterator().next().getMessage());
+        }
+        Coupon coupon = new Coupon(
+                null,
+                dto.code() == null ? codePool.allocate() : dto.code(),
+                dto.description(),
+                dto.discountValue(),
+                dto.expirationDate(),
+                CouponStatus.ACTIVE,
+                dto.isPublished(),
+                couponValidator);
+        coupon.setMaxRedemptions(dto.maxRedemptions());
+        return coupon;
+    }
+}
@@ -0,0 +1,158 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponBulkRequestDTO;
+import com.charlles.coupon_processor.dto.CouponBulkResultDTO;
+import com.charlles.coupon_processor.dto.CouponEventType;
+import com.charlles.coupon_processor.dto.CouponStatus;
+import com.charlles.coupon_processor.exception.InvalidCouponException;
+import com.charlles.coupon_processor.repository.CouponIdStatus;
+import com.charlles.coupon_processor.repository.CouponRepository;
+import com.charlles.coupon_processor.validation.CouponValidator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+@Service
+public class CouponBulkService {
+
+    private final CouponRepository couponRepository;
+    private final CouponService couponService;
+    private final CouponValidator couponValidator;
+    private final CouponEventLog eventLog;
+    private final int chunkSize;
+    private final CouponMetrics.Operation deleteMetrics;
+    private final CouponMetrics.Operation statusMetrics;
+
+    public CouponBulkService(CouponRepository couponRepository,
+                             CouponService couponService,
+                             CouponValidator couponValidator,
+                             CouponEventLog eventLog,
+                             CouponMetrics couponMetrics,
+                             @Value("${coupon.bulk.chunk-size:1000}") int chunkSize) {
+        this.couponRepository = couponRepository;
+        this.couponService = couponService;
+        this.couponValidator = couponValidator;
+        this.eventLog = eventLog;
+        this.chunkSize = chunkSize;
+        this.deleteMetrics = couponMetrics.operation("bulk_delete");
+        this.statusMetrics = couponMetrics.operation("bulk_status");
+    }
+
+    public CouponBulkResultDTO delete(CouponBulkRequestDTO request) {
+        return deleteMetrics.record(() -> apply(request, CouponStatus.DELETED));
+    }
+
+    // deleted coupons stay deleted, they are reported instead of being reactivated
+    public CouponBulkResultDTO changeStatus(CouponBulkRequestDTO request, CouponStatus target) {
+        return statusMetrics.record(() -> {
+            if (target == null || target == CouponStatus.DELETED) {
+                throw new InvalidCouponException("target status must be ACTIVE or INACTIVE, use bulk delete to delete");
+            }
+            return apply(request, target);
+        });
+    }
+
+    // each chunk is one select of ids and statuses plus one guarded update by primary key,
+    // so a large selection never loads entities or locks a wide range of the table
+    private CouponBulkResultDTO apply(CouponBulkRequestDTO request, CouponStatus target) {
+        if (request.ids() != null && request.hasFilter()) {
+            throw new InvalidCouponException("bulk selection takes either ids or a filter, not both");
+        }
+        Tally tally = new Tally();
+        if (request.ids() != null) {
+            List<Long> ids = new ArrayList<>(new LinkedHashSet<>(request.ids()));
+            for (int from = 0; from < ids.size(); from += chunkSize) {
+                List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+                List<CouponIdStatus> rows = couponRepository.findIdStatuses(chunk);
+                tally.notFound += chunk.size() - rows.size();
+                update(rows, target, tally);
+            }
+        } else {
+            CouponBulkRequestDTO filter = normalize(request);
+            List<CouponIdStatus> rows;
+            Long afterId = null;
+            do {
+                rows = couponRepository.findIdStatuses(filter, afterId, chunkSize);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                update(rows, target, tally);
+                afterId = rows.get(rows.size() - 1).id();
+            } while (rows.size() == chunkSize);
+        }
+        return new CouponBulkResultDTO(tally.matched, tally.updated, tally.unchanged, tally.alreadyDeleted, tally.notFound);
+    }
+
+    // rows that another writer changed between the select and the update are not
+    // updated by the guarded statement, they count as already deleted or unchanged
+    private void update(List<CouponIdStatus> rows, CouponStatus target, Tally tally) {
+        tally.matched += rows.size();
+        List<Long> candidates = new ArrayList<>(rows.size());
+        for (CouponIdStatus row : rows) {
+            if (row.status() == CouponStatus.DELETED) {
+                tally.alreadyDeleted++;
+            } else if (row.status() == target) {
+                tally.unchanged++;
+            } else {
+                candidates.add(row.id());
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        int updated = target == CouponStatus.DELETED
+                ? couponRepository.softDelete(candidates)
+                : couponRepository.changeStatus(candidates, target);
+        tally.updated += updated;
+        if (target == CouponStatus.DELETED) {
+            tally.alreadyDeleted += candidates.size() - updated;
+        } else {
+            tally.unchanged += candidates.size() - updated;
+        }
+        candidates.forEach(couponService::evict);
+        for (Long id : changed(candidates, updated, target)) {
+            if (target == CouponStatus.DELETED) {
+                eventLog.publish(id, CouponEventType.DELETED, "bulk");
+            } else {
+                eventLog.publish(id, CouponEventType.STATUS_CHANGED, target.name());
+            }
+        }
+    }
+
+    // only a race with another writer makes the update miss rows, re-read the chunk
+    // then so the history has no event for a coupon this update did not change
+    private List<Long> changed(List<Long> candidates, int updated, CouponStatus target) {
+        if (updated == candidates.size()) {
+            return candidates;
+        }
+        return couponRepository.findIdStatuses(candidates).stream()
+                .filter(row -> row.status() == target)
+                .map(CouponIdStatus::id)
+                .toList();
+    }
+
+    private CouponBulkRequestDTO normalize(CouponBulkRequestDTO request) {
+        if (!request.hasFilter()) {
+            throw new InvalidCouponException("bulk selection needs ids or at least one filter");
+        }
+        if (request.codePrefix() == null) {
+            return request;
+        }
+        String codePrefix = couponValidator.normalizeCode(request.codePrefix());
+        if (codePrefix.isEmpty()) {
+            throw new InvalidCouponException("code prefix must contain letters or digits");
+        }
+        return new CouponBulkRequestDTO(null, codePrefix, request.status(), request.expiresAfter(), request.expiresBefore());
+    }
+
+    private static class Tally {
+        long matched;
+        long updated;
+        long unchanged;
+        long alreadyDeleted;
+        long notFound;
+    }
+}
@@ -0,0 +1,140 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.repository.CouponRepository;
+import com.charlles.coupon_processor.validation.CouponValidator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// unused normalized codes generated ahead of time, so a create without a code takes one
+// from a lock-free queue instead of guessing and retrying against the unique index.
+// the queue is topped up in the background once it drops below the refill threshold
+@Component
+public class CouponCodePool {
+    private static final Logger log = LoggerFactory.getLogger(CouponCodePool.class);
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+
+    private final CouponRepository couponRepository;
+    private final TaskExecutor executor;
+    private final int size;
+    private final int refillThreshold;
+    private final int batchSize;
+    private final SecureRandom random = new SecureRandom();
+    private final ConcurrentLinkedQueue<String> codes = new ConcurrentLinkedQueue<>();
+    private final Set<String> pooled = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    public CouponCodePool(CouponRepository couponRepository,
+                          @Qualifier("applicationTaskExecutor") TaskExecutor executor,
+                          MeterRegistry meterRegistry,
+                          @Value("${coupon.code-pool.size:10000}") int size,
+                          @Value("${coupon.code-pool.refill-threshold:2500}") int refillThreshold,
+                          @Value("${coupon.code-pool.batch-size:500}") int batchSize) {
+        this.couponRepository = couponRepository;
+        this.executor = executor;
+        this.size = size;
+        this.refillThreshold = refillThreshold;
+        this.batchSize = batchSize;
+        Gauge.builder("coupon.code.pool.depth", pooled, Set::size)
+                .description("pre-generated coupon codes not handed out yet")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        scheduleRefill();
+    }
+
+    // a code was absent from the table when it was generated, a client supplied code can
+    // still take it before the coupon is saved so callers retry on a unique violation
+    public String allocate() {
+        String code = codes.poll();
+        if (code != null) {
+            pooled.remove(code);
+        }
+        if (pooled.size() < refillThreshold) {
+            scheduleRefill();
+        }
+        while (code == null) {
+            // drained faster than the refill, generate this one inline
+            Set<String> fresh = generate(1);
+            code = fresh.isEmpty() ? null : fresh.iterator().next();
+        }
+        return code;
+    }
+
+    public int depth() {
+        return pooled.size();
+    }
+
+    public void refill() {
+        int missing;
+        while ((missing = size - pooled.size()) > 0) {
+            Set<String> fresh = generate(Math.min(batchSize, missing));
+            if (fresh.isEmpty()) {
+                // every candidate was taken, leave the rest to the next refill
+                return;
+            }
+            for (String code : fresh) {
+                if (pooled.add(code)) {
+                    codes.offer(code);
+                }
+            }
+        }
+    }
+
+    private void scheduleRefill() {
+        if (!refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    refill();
+                } catch (RuntimeException ex) {
+                    log.warn("could not refill coupon code pool", ex);
+                } finally {
+                    refilling.set(false);
+                }
+            });
+        } catch (RuntimeException ex) {
+            refilling.set(false);
+            log.warn("could not schedule coupon code pool refill", ex);
+        }
+    }
+
+    // one indexed lookup per batch drops the candidates that are already stored
+    private Set<String> generate(int count) {
+        Set<String> candidates = new HashSet<>(count * 2);
+        while (candidates.size() < count) {
+            String candidate = randomCode();
+            if (!pooled.contains(candidate)) {
+                candidates.add(candidate);
+            }
+        }
+        couponRepository.findExistingCodes(candidates).forEach(candidates::remove);
+        return candidates;
+    }
+
+    private String randomCode() {
+        char[] code = new char[CouponValidator.CODE_LENGTH];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(code);
+    }
+}
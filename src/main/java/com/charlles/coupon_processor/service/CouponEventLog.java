@@ -0,0 +1,163 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponEventDTO;
+import com.charlles.coupon_processor.dto.CouponEventType;
+import com.charlles.coupon_processor.entity.CouponEvent;
+import com.charlles.coupon_processor.repository.CouponEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// write-behind lifecycle history: the services only enqueue, a scheduled flush drains
+// the queue into coupon_events in batches so the request path never waits on the insert
+@Component
+public class CouponEventLog {
+    private static final Logger log = LoggerFactory.getLogger(CouponEventLog.class);
+
+    // what publish does when the queue is full
+    public enum Overflow {
+        // drop the event right away, the request is never slowed down
+        DROP,
+        // wait up to block-timeout for the flush to make room, then drop
+        BLOCK
+    }
+
+    private final CouponEventRepository eventRepository;
+    private final Clock clock;
+    private final int batchSize;
+    private final Overflow overflow;
+    private final Duration blockTimeout;
+    private final BlockingQueue<CouponEvent> queue;
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter failed;
+    // a batch is drained and written under the write lock, history reads under the read
+    // lock, so it never looks between the drain and the commit of a batch
+    private final ReadWriteLock batchLock = new ReentrantReadWriteLock();
+
+    public CouponEventLog(CouponEventRepository eventRepository,
+                          Clock clock,
+                          MeterRegistry meterRegistry,
+                          @Value("${coupon.events.capacity:10000}") int capacity,
+                          @Value("${coupon.events.batch-size:500}") int batchSize,
+                          @Value("${coupon.events.overflow:DROP}") Overflow overflow,
+                          @Value("${coupon.events.block-timeout:PT0.1S}") Duration blockTimeout) {
+        this.eventRepository = eventRepository;
+        this.clock = clock;
+        this.batchSize = batchSize;
+        this.overflow = overflow;
+        this.blockTimeout = blockTimeout;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.written = events(meterRegistry, "written");
+        this.dropped = events(meterRegistry, "dropped");
+        this.failed = events(meterRegistry, "failed");
+        Gauge.builder("coupon.events.queue.depth", queue, BlockingQueue::size)
+                .description("coupon events waiting to be written")
+                .register(meterRegistry);
+        Gauge.builder("coupon.events.lag", this, CouponEventLog::lagSeconds)
+                .description("age of the oldest coupon event waiting to be written")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    public void publish(Long couponId, CouponEventType type, String detail) {
+        CouponEvent event = new CouponEvent(couponId, type, detail, Timestamp.from(clock.instant()));
+        boolean queued;
+        if (overflow == Overflow.BLOCK) {
+            try {
+                queued = queue.offer(event, blockTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        } else {
+            queued = queue.offer(event);
+        }
+        if (!queued) {
+            dropped.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${coupon.events.flush-interval:PT1S}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    // whatever is still queued on shutdown is written before the datasource closes
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    // a failed batch is counted and logged instead of being put back, retrying it
+    // would only grow the backlog while the database is unavailable
+    public synchronized int flush() {
+        int total = 0;
+        List<CouponEvent> batch = new ArrayList<>(batchSize);
+        while (true) {
+            batchLock.writeLock().lock();
+            try {
+                if (queue.drainTo(batch, batchSize) == 0) {
+                    return total;
+                }
+                eventRepository.saveAll(batch);
+                written.increment(batch.size());
+                total += batch.size();
+            } catch (DataAccessException ex) {
+                failed.increment(batch.size());
+                log.warn("could not write {} coupon events", batch.size(), ex);
+            } finally {
+                batchLock.writeLock().unlock();
+            }
+            batch.clear();
+        }
+    }
+
+    // events still in the queue are appended so a coupon's own history is up to date
+    // before the next flush. an event is either still queued or already committed while
+    // the read lock is held, a batch drained but not yet written would be in neither
+    public List<CouponEventDTO> history(Long couponId) {
+        batchLock.readLock().lock();
+        try {
+            List<CouponEventDTO> history = new ArrayList<>(eventRepository.findHistory(couponId));
+            for (CouponEvent event : queue) {
+                if (event.getCouponId().equals(couponId)) {
+                    history.add(new CouponEventDTO(event.getType(), event.getDetail(), event.getOccurredAt()));
+                }
+            }
+            return history;
+        } finally {
+            batchLock.readLock().unlock();
+        }
+    }
+
+    private double lagSeconds() {
+        CouponEvent oldest = queue.peek();
+        return oldest == null ? 0 : (clock.millis() - oldest.getOccurredAt().getTime()) / 1000.0;
+    }
+
+    private static Counter events(MeterRegistry registry, String result) {
+        return Counter.builder("coupon.events")
+                .description("coupon events by what happened to them")
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,78 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponStatus;
+import com.charlles.coupon_processor.repository.CouponRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+@Service
+public class CouponExpiryService {
+    private static final Logger log = LoggerFactory.getLogger(CouponExpiryService.class);
+
+    private final CouponRepository couponRepository;
+    private final CouponService couponService;
+    private final int chunkSize;
+    private final boolean enabled;
+    private final DistributionSummary expiredPerRun;
+    private final Timer sweepTimer;
+
+    public CouponExpiryService(CouponRepository couponRepository,
+                               CouponService couponService,
+                               MeterRegistry meterRegistry,
+                               @Value("${coupon.expiry.chunk-size:1000}") int chunkSize,
+                               @Value("${coupon.expiry.enabled:true}") boolean enabled) {
+        this.couponRepository = couponRepository;
+        this.couponService = couponService;
+        this.chunkSize = chunkSize;
+        this.enabled = enabled;
+        this.expiredPerRun = DistributionSummary.builder("coupon.expiry.expired")
+                .description("coupons moved to INACTIVE per sweep")
+                .register(meterRegistry);
+        this.sweepTimer = Timer.builder("coupon.expiry.sweep")
+                .description("duration of an expiry sweep")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${coupon.expiry.interval:PT1M}", initialDelayString = "${coupon.expiry.interval:PT1M}")
+    public void scheduledSweep() {
+        if (enabled) {
+            sweep();
+        }
+    }
+
+    // each chunk is its own short update by primary key, so the sweep never holds
+    // locks on a large range of the table
+    public long sweep() {
+        Timer.Sample sample = Timer.start();
+        Timestamp now = Timestamp.from(Instant.now());
+        long expired = 0;
+
+        List<Long> ids;
+        do {
+            ids = couponRepository.findExpiredIds(CouponStatus.ACTIVE, now, Limit.of(chunkSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            expired += couponRepository.updateStatus(ids, CouponStatus.ACTIVE, CouponStatus.INACTIVE);
+            ids.forEach(couponService::evict);
+        } while (ids.size() == chunkSize);
+
+        expiredPerRun.record(expired);
+        sample.stop(sweepTimer);
+        if (expired > 0) {
+            log.info("expiry sweep moved {} coupons to INACTIVE", expired);
+        }
+        return expired;
+    }
+}
@@ -0,0 +1,114 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponExportFormat;
+import com.charlles.coupon_processor.dto.CouponStatus;
+import com.charlles.coupon_processor.entity.Coupon;
+import com.charlles.coupon_processor.repository.CouponRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+public class CouponExportService {
+    private static final String CSV_HEADER = "id,code,description,discountValue,expirationDate,status,published,redeemed";
+
+    private final CouponRepository couponRepository;
+    private final CouponService couponService;
+    private final ObjectWriter jsonWriter;
+    private final int clearInterval;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public CouponExportService(CouponRepository couponRepository,
+                               CouponService couponService,
+                               ObjectMapper objectMapper,
+                               @Value("${coupon.export.clear-interval:1000}") int clearInterval) {
+        this.couponRepository = couponRepository;
+        this.couponService = couponService;
+        this.jsonWriter = objectMapper.writer();
+        this.clearInterval = clearInterval;
+    }
+
+    // rows are scrolled with a jdbc fetch size and the persistence context is cleared
+    // every clearInterval rows, so memory stays flat no matter how big the table is
+    @Transactional(readOnly = true)
+    public long export(CouponStatus status, CouponExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        long rows = 0;
+
+        try (Stream<Coupon> coupons = status == null
+                ? couponRepository.streamAll()
+                : couponRepository.streamByStatus(status)) {
+            if (format == CouponExportFormat.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            Iterator<Coupon> iterator = coupons.iterator();
+            while (iterator.hasNext()) {
+                Coupon coupon = iterator.next();
+                if (format == CouponExportFormat.CSV) {
+                    writeCsv(coupon, writer);
+                } else {
+                    writer.write(jsonWriter.writeValueAsString(couponService.toResponse(coupon)));
+                    writer.write('\n');
+                }
+                if (++rows % clearInterval == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+        writer.flush();
+        return rows;
+    }
+
+    private void writeCsv(Coupon coupon, Writer writer) throws IOException {
+        writer.write(coupon.getId().toString());
+        writer.write(',');
+        writeCsvField(coupon.getCode(), writer);
+        writer.write(',');
+        writeCsvField(coupon.getDescription(), writer);
+        writer.write(',');
+        writer.write(coupon.getDiscountValue().toPlainString());
+        writer.write(',');
+        writer.write(coupon.getExpirationDate().toInstant().toString());
+        writer.write(',');
+        writer.write(coupon.getStatus().name());
+        writer.write(',');
+        writer.write(Boolean.toString(coupon.isPublished()));
+        writer.write(',');
+        writer.write(Boolean.toString(coupon.isRedeemed()));
+        writer.write('\n');
+    }
+
+    private void writeCsvField(String value, Writer writer) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,185 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.charlles.coupon_processor.entity.IdempotencyRecord;
+import com.charlles.coupon_processor.exception.IdempotencyKeyMismatchException;
+import com.charlles.coupon_processor.exception.InvalidCouponException;
+import com.charlles.coupon_processor.repository.IdempotencyRecordRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+@Service
+public class CouponIdempotencyService {
+    private static final Logger log = LoggerFactory.getLogger(CouponIdempotencyService.class);
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository repository;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final Duration ttl;
+    private final Cache<String, Stored> completed;
+    private final ConcurrentMap<String, Running> inFlight = new ConcurrentHashMap<>();
+
+    public CouponIdempotencyService(IdempotencyRecordRepository repository,
+                                    ObjectMapper objectMapper,
+                                    Clock clock,
+                                    @Value("${coupon.idempotency.maximum-size:100000}") long maximumSize,
+                                    @Value("${coupon.idempotency.ttl:PT24H}") Duration ttl) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.ttl = ttl;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public record Result(CouponResponseDTO response, boolean replayed) {
+    }
+
+    private record Stored(String fingerprint, CouponResponseDTO response) {
+    }
+
+    private record Running(String fingerprint, CompletableFuture<CouponResponseDTO> execution) {
+    }
+
+    // identifies the request a key was first used with, a retry has to send the same
+    // method, path and body to get the stored result back
+    public String fingerprint(String method, String path, Object body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((method + " " + path + "\n").getBytes(StandardCharsets.UTF_8));
+            if (body != null) {
+                digest.update(objectMapper.writeValueAsBytes(body));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // the first request with a key runs the action, concurrent ones wait for its result and
+    // later ones replay it from memory or, after eviction or a restart, from the database.
+    // failures are shared with the waiters but not stored, so the client can retry them.
+    // a key reused for a different request is refused instead of replaying the first one
+    public Result execute(String scope, String key, String fingerprint, Supplier<CouponResponseDTO> action) {
+        if (key == null) {
+            return new Result(action.get(), false);
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidCouponException("idempotency key must have between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        String storeKey = scope + ":" + key;
+
+        Stored cached = completed.getIfPresent(storeKey);
+        if (cached != null) {
+            return new Result(replay(cached, fingerprint).response(), true);
+        }
+
+        Running execution = new Running(fingerprint, new CompletableFuture<>());
+        Running running = inFlight.putIfAbsent(storeKey, execution);
+        if (running != null) {
+            checkFingerprint(running.fingerprint(), fingerprint);
+            return new Result(await(running.execution()), true);
+        }
+        try {
+            Optional<Stored> stored = load(storeKey);
+            if (stored.isPresent()) {
+                completed.put(storeKey, stored.get());
+                execution.execution().complete(stored.get().response());
+                return new Result(replay(stored.get(), fingerprint).response(), true);
+            }
+            CouponResponseDTO response = action.get();
+            store(storeKey, fingerprint, response);
+            execution.execution().complete(response);
+            return new Result(response, false);
+        } catch (RuntimeException | Error ex) {
+            execution.execution().completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(storeKey, execution);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${coupon.idempotency.purge-interval:PT10M}")
+    public void purgeExpired() {
+        int purged = repository.deleteExpired(Timestamp.from(clock.instant()));
+        if (purged > 0) {
+            log.debug("purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private Optional<Stored> load(String storeKey) {
+        return repository.findValid(storeKey, Timestamp.from(clock.instant()))
+                .map(record -> new Stored(
+                        record.getRequestFingerprint(),
+                        objectMapper.readValue(record.getResponse(), CouponResponseDTO.class)));
+    }
+
+    private Stored replay(Stored stored, String fingerprint) {
+        checkFingerprint(stored.fingerprint(), fingerprint);
+        return stored;
+    }
+
+    // keys stored before fingerprints existed have none and are replayed as before
+    private void checkFingerprint(String first, String fingerprint) {
+        if (first != null && !Objects.equals(first, fingerprint)) {
+            throw new IdempotencyKeyMismatchException("idempotency key was already used for a different request");
+        }
+    }
+
+    // the action already happened, losing the durable copy only narrows the replay window
+    // to this instance's memory so it is logged instead of failing the request
+    private void store(String storeKey, String fingerprint, CouponResponseDTO response) {
+        completed.put(storeKey, new Stored(fingerprint, response));
+        Instant now = clock.instant();
+        try {
+            repository.save(new IdempotencyRecord(
+                    storeKey,
+                    fingerprint,
+                    objectMapper.writeValueAsString(response),
+                    Timestamp.from(now),
+                    Timestamp.from(now.plus(ttl))));
+        } catch (DataAccessException ex) {
+            log.warn("could not persist idempotency key {}", storeKey, ex);
+        }
+    }
+
+    private CouponResponseDTO await(CompletableFuture<CouponResponseDTO> running) {
+        try {
+            return running.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (ex.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponImportJobDTO;
+import com.charlles.coupon_processor.dto.CouponImportState;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+// progress of one import, written by the worker thread and read by status requests
+class CouponImportJob {
+
+    private final String id;
+    private final Path upload;
+    private final Path errorReport;
+    private final long totalBytes;
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private volatile CouponImportState state = CouponImportState.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    CouponImportJob(String id, Path upload, Path errorReport, long totalBytes) {
+        this.id = id;
+        this.upload = upload;
+        this.errorReport = errorReport;
+        this.totalBytes = totalBytes;
+    }
+
+    String id() {
+        return id;
+    }
+
+    Path upload() {
+        return upload;
+    }
+
+    Path errorReport() {
+        return errorReport;
+    }
+
+    Instant finishedAt() {
+        return finishedAt;
+    }
+
+    void start() {
+        startedAt = Instant.now();
+        state = CouponImportState.RUNNING;
+    }
+
+    void complete() {
+        finishedAt = Instant.now();
+        state = CouponImportState.COMPLETED;
+    }
+
+    void fail(String message) {
+        error = message;
+        finishedAt = Instant.now();
+        state = CouponImportState.FAILED;
+    }
+
+    void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    void accepted(long count) {
+        accepted.addAndGet(count);
+    }
+
+    void rejected(long count) {
+        rejected.addAndGet(count);
+    }
+
+    void bytesRead(long count) {
+        bytesRead.set(count);
+    }
+
+    CouponImportJobDTO toDTO() {
+        Instant started = startedAt;
+        Instant end = finishedAt == null ? Instant.now() : finishedAt;
+        double seconds = started == null ? 0 : Duration.between(started, end).toMillis() / 1000.0;
+        long rows = rowsRead.get();
+        return new CouponImportJobDTO(
+                id,
+                state,
+                rows,
+                accepted.get(),
+                rejected.get(),
+                bytesRead.get(),
+                totalBytes,
+                totalBytes == 0 ? 1.0 : Math.min(1.0, (double) bytesRead.get() / totalBytes),
+                seconds == 0 ? 0 : rows / seconds,
+                started,
+                finishedAt,
+                error);
+    }
+}
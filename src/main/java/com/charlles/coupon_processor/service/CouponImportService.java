@@ -0,0 +1,406 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponBatchItemDTO;
+import com.charlles.coupon_processor.dto.CouponBatchResponseDTO;
+import com.charlles.coupon_processor.dto.CouponDTO;
+import com.charlles.coupon_processor.dto.CouponImportJobDTO;
+import com.charlles.coupon_processor.exception.CouponImportJobNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class CouponImportService {
+    private static final Logger log = LoggerFactory.getLogger(CouponImportService.class);
+
+    private final CouponBatchService batchService;
+    private final AsyncTaskExecutor executor;
+    private final int chunkSize;
+    private final Duration retention;
+    private final int maxRecordLength;
+    private final Map<String, CouponImportJob> jobs = new ConcurrentHashMap<>();
+
+    public CouponImportService(CouponBatchService batchService,
+                               @Qualifier("applicationTaskExecutor") AsyncTaskExecutor executor,
+                               @Value("${coupon.batch.chunk-size:500}") int chunkSize,
+                               @Value("${coupon.import.retention:PT1H}") Duration retention,
+                               @Value("${coupon.import.max-record-length:16384}") int maxRecordLength) {
+        this.batchService = batchService;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.retention = retention;
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    // the upload is spooled to disk and parsed by a background worker, the caller
+    // only waits for the copy and polls the job for progress
+    public CouponImportJobDTO start(MultipartFile file) {
+        Path upload = null;
+        Path errorReport = null;
+        try {
+            upload = Files.createTempFile("coupon-import-", ".csv");
+            file.transferTo(upload);
+            errorReport = Files.createTempFile("coupon-import-errors-", ".csv");
+
+            CouponImportJob job = new CouponImportJob(UUID.randomUUID().toString(), upload, errorReport, Files.size(upload));
+            jobs.put(job.id(), job);
+            try {
+                executor.execute(() -> run(job));
+            } catch (RuntimeException ex) {
+                jobs.remove(job.id());
+                throw ex;
+            }
+            return job.toDTO();
+        } catch (IOException | RuntimeException ex) {
+            delete(upload);
+            delete(errorReport);
+            if (ex instanceof IOException io) {
+                throw new UncheckedIOException("could not store import file", io);
+            }
+            throw (RuntimeException) ex;
+        }
+    }
+
+    // finished jobs stay queryable for coupon.import.retention, then the job and its
+    // error report are dropped. running jobs are never purged
+    @Scheduled(fixedDelayString = "${coupon.import.purge-interval:PT5M}")
+    public void purgeFinished() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            Instant finishedAt = job.finishedAt();
+            if (finishedAt == null || !finishedAt.isBefore(cutoff)) {
+                return false;
+            }
+            delete(job.errorReport());
+            return true;
+        });
+    }
+
+    public CouponImportJobDTO status(String jobId) {
+        return getJob(jobId).toDTO();
+    }
+
+    public Path errorReport(String jobId) {
+        return getJob(jobId).errorReport();
+    }
+
+    private CouponImportJob getJob(String jobId) {
+        CouponImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new CouponImportJobNotFoundException("import job not found with id: " + jobId);
+        }
+        return job;
+    }
+
+    private void run(CouponImportJob job) {
+        job.start();
+        try (CountingInputStream in = new CountingInputStream(Files.newInputStream(job.upload()));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+             Writer errors = Files.newBufferedWriter(job.errorReport(), StandardCharsets.UTF_8)) {
+            errors.write("line,error,raw\n");
+
+            String headerLine = reader.readLine();
+            if (headerLine == null) {
+                job.complete();
+                return;
+            }
+            Map<String, Integer> columns = parseHeader(headerLine);
+
+            RecordReader records = new RecordReader(reader, maxRecordLength);
+            List<CouponDTO> chunk = new ArrayList<>(chunkSize);
+            List<String[]> chunkLines = new ArrayList<>(chunkSize);
+            long lineNumber = 1;
+            Record next;
+            while ((next = records.next()) != null) {
+                String record = next.text();
+                long recordLine = ++lineNumber;
+                for (int i = record.indexOf('\n'); i >= 0; i = record.indexOf('\n', i + 1)) {
+                    lineNumber++;
+                }
+                if (record.isBlank()) {
+                    continue;
+                }
+                job.rowRead();
+                if (next.unterminated()) {
+                    writeError(errors, Long.toString(recordLine), "unterminated quoted field", record);
+                    job.rejected(1);
+                    continue;
+                }
+                try {
+                    chunk.add(toDTO(parseFields(record), columns));
+                    chunkLines.add(new String[]{Long.toString(recordLine), record});
+                } catch (IllegalArgumentException ex) {
+                    writeError(errors, Long.toString(recordLine), ex.getMessage(), record);
+                    job.rejected(1);
+                }
+                if (chunk.size() == chunkSize) {
+                    persist(job, chunk, chunkLines, errors);
+                    job.bytesRead(in.count());
+                }
+            }
+            if (!chunk.isEmpty()) {
+                persist(job, chunk, chunkLines, errors);
+            }
+            job.bytesRead(in.count());
+            job.complete();
+        } catch (IOException | RuntimeException ex) {
+            log.error("coupon import {} failed", job.id(), ex);
+            job.fail(ex.getMessage());
+        } finally {
+            delete(job.upload());
+        }
+    }
+
+    private void delete(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.warn("could not delete import file {}", file, ex);
+        }
+    }
+
+    // the next chunk is only parsed after this one is committed, so a slow database
+    // slows the reader down instead of piling parsed rows up in memory
+    private void persist(CouponImportJob job, List<CouponDTO> chunk, List<String[]> chunkLines, Writer errors) throws IOException {
+        CouponBatchResponseDTO response = batchService.createAll(chunk.iterator());
+        job.accepted(response.accepted());
+        job.rejected(response.rejected());
+        for (CouponBatchItemDTO item : response.items()) {
+            if (!item.accepted()) {
+                String[] line = chunkLines.get(item.index());
+                writeError(errors, line[0], item.error(), line[1]);
+            }
+        }
+        chunk.clear();
+        chunkLines.clear();
+    }
+
+    private Map<String, Integer> parseHeader(String headerLine) {
+        List<String> names = parseFields(headerLine);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : new String[]{"code", "discountvalue", "expirationdate"}) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("missing column: " + required);
+            }
+        }
+        return columns;
+    }
+
+    private CouponDTO toDTO(List<String> fields, Map<String, Integer> columns) {
+        String code = field(fields, columns, "code");
+        String description = field(fields, columns, "description");
+        String discountValue = field(fields, columns, "discountvalue");
+        String expirationDate = field(fields, columns, "expirationdate");
+        String published = field(fields, columns, "published");
+
+        BigDecimal discount;
+        try {
+            discount = discountValue == null ? null : new BigDecimal(discountValue.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("invalid discount value: " + discountValue);
+        }
+        return new CouponDTO(
+                null,
+                code,
+                description,
+                discount,
+                parseTimestamp(expirationDate),
+                published == null ? null : Boolean.valueOf(published.trim()));
+    }
+
+    private String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    // accepts the iso instants written by the export and plain jdbc timestamps
+    private Timestamp parseTimestamp(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Timestamp.from(Instant.parse(value.trim()));
+        } catch (DateTimeParseException ex) {
+            try {
+                return Timestamp.valueOf(value.trim());
+            } catch (IllegalArgumentException invalid) {
+                throw new IllegalArgumentException("invalid expiration date: " + value);
+            }
+        }
+    }
+
+    private static int countQuotes(CharSequence value) {
+        int quotes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes;
+    }
+
+    private static List<String> parseFields(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private void writeError(Writer errors, String line, String error, String raw) throws IOException {
+        errors.write(line);
+        errors.write(',');
+        errors.write(quote(error));
+        errors.write(',');
+        errors.write(quote(raw));
+        errors.write('\n');
+    }
+
+    private String quote(String value) {
+        return '"' + (value == null ? "" : value.replace("\"", "\"\"")) + '"';
+    }
+
+    private record Record(String text, boolean unterminated) {
+    }
+
+    // a quoted field may contain line breaks, so a record goes on until its quotes
+    // balance, counted one line at a time. a record still open after maxLength
+    // characters or at the end of the file comes from a stray quote: its first line
+    // is returned alone as unterminated and the lines after it are read again, so at
+    // most maxLength characters are ever held and every line is re-read at most once
+    private static class RecordReader {
+        private final BufferedReader reader;
+        private final int maxLength;
+        private final Deque<String> pending = new ArrayDeque<>();
+
+        RecordReader(BufferedReader reader, int maxLength) {
+            this.reader = reader;
+            this.maxLength = maxLength;
+        }
+
+        Record next() throws IOException {
+            String first = nextLine();
+            if (first == null) {
+                return null;
+            }
+            if (countQuotes(first) % 2 == 0) {
+                return new Record(first, false);
+            }
+            List<String> lines = new ArrayList<>();
+            lines.add(first);
+            int length = first.length();
+            while (true) {
+                String line = nextLine();
+                if (line == null || length + 1 + line.length() > maxLength) {
+                    if (line != null) {
+                        pending.addFirst(line);
+                    }
+                    for (int i = lines.size() - 1; i > 0; i--) {
+                        pending.addFirst(lines.get(i));
+                    }
+                    return new Record(first, true);
+                }
+                lines.add(line);
+                length += 1 + line.length();
+                if (countQuotes(line) % 2 != 0) {
+                    return new Record(String.join("\n", lines), false);
+                }
+            }
+        }
+
+        private String nextLine() throws IOException {
+            String line = pending.pollFirst();
+            return line != null ? line : reader.readLine();
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong count = new AtomicLong();
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long count() {
+            return count.get();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) {
+                count.incrementAndGet();
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count.addAndGet(read);
+            }
+            return read;
+        }
+    }
+}
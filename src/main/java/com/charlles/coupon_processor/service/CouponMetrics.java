@@ -0,0 +1,124 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.cache.SingleFlight;
+import com.charlles.coupon_processor.exception.CouponAlreadyDeletedException;
+import com.charlles.coupon_processor.exception.CouponCodeAlreadyExistsException;
+import com.charlles.coupon_processor.exception.CouponNotFoundException;
+import com.charlles.coupon_processor.exception.CouponNotRedeemableException;
+import com.charlles.coupon_processor.exception.InvalidCouponException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// one coupon.operations timer per operation and outcome, the timer count doubles as
+// the outcome counter and the histogram buckets are switched on in application.yml
+@Component
+public class CouponMetrics {
+
+    public enum Outcome {
+        SUCCESS("success"),
+        INVALID("invalid"),
+        NOT_FOUND("not_found"),
+        ALREADY_DELETED("already_deleted"),
+        CONFLICT("conflict"),
+        ERROR("error");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() {
+            return tag;
+        }
+
+        static Outcome of(Throwable ex) {
+            if (ex instanceof InvalidCouponException) {
+                return INVALID;
+            }
+            if (ex instanceof CouponNotFoundException) {
+                return NOT_FOUND;
+            }
+            if (ex instanceof CouponAlreadyDeletedException) {
+                return ALREADY_DELETED;
+            }
+            if (ex instanceof CouponNotRedeemableException || ex instanceof CouponCodeAlreadyExistsException) {
+                return CONFLICT;
+            }
+            return ERROR;
+        }
+    }
+
+    private final MeterRegistry registry;
+
+    public CouponMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    // timers are registered up front so every outcome is exported from the start
+    // and recording never goes through the registry lookup
+    public Operation operation(String name) {
+        Map<Outcome, Timer> timers = new EnumMap<>(Outcome.class);
+        for (Outcome outcome : Outcome.values()) {
+            timers.put(outcome, Timer.builder("coupon.operations")
+                    .description("coupon service operations by outcome")
+                    .tag("operation", name)
+                    .tag("outcome", outcome.tag())
+                    .register(registry));
+        }
+        return new Operation(registry, timers);
+    }
+
+    // coupon.loads{result=coalesced} against {result=executed} shows how many database
+    // loads the single flight saved
+    public void monitor(String lookup, SingleFlight<?, ?> singleFlight) {
+        FunctionCounter.builder("coupon.loads", singleFlight, SingleFlight::executed)
+                .description("coupon loads, executed against the database or coalesced onto one in flight")
+                .tag("lookup", lookup)
+                .tag("result", "executed")
+                .register(registry);
+        FunctionCounter.builder("coupon.loads", singleFlight, SingleFlight::coalesced)
+                .description("coupon loads, executed against the database or coalesced onto one in flight")
+                .tag("lookup", lookup)
+                .tag("result", "coalesced")
+                .register(registry);
+    }
+
+    public static final class Operation {
+        private final MeterRegistry registry;
+        private final Map<Outcome, Timer> timers;
+
+        private Operation(MeterRegistry registry, Map<Outcome, Timer> timers) {
+            this.registry = registry;
+            this.timers = timers;
+        }
+
+        public <T> T record(Supplier<T> action) {
+            Timer.Sample sample = Timer.start(registry);
+            Outcome outcome = Outcome.ERROR;
+            try {
+                T result = action.get();
+                outcome = Outcome.SUCCESS;
+                return result;
+            } catch (RuntimeException ex) {
+                outcome = Outcome.of(ex);
+                throw ex;
+            } finally {
+                sample.stop(timers.get(outcome));
+            }
+        }
+
+        public void record(Runnable action) {
+            record(() -> {
+                action.run();
+                return null;
+            });
+        }
+    }
+}
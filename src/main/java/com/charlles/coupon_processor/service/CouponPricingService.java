@@ -0,0 +1,157 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponQuoteBatchDTO;
+import com.charlles.coupon_processor.dto.CouponQuoteDTO;
+import com.charlles.coupon_processor.dto.CouponQuoteItemDTO;
+import com.charlles.coupon_processor.dto.CouponQuoteRequestDTO;
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.charlles.coupon_processor.dto.CouponStatus;
+import com.charlles.coupon_processor.exception.CouponNotFoundException;
+import com.charlles.coupon_processor.exception.CouponNotRedeemableException;
+import com.charlles.coupon_processor.exception.InvalidCouponException;
+import com.charlles.coupon_processor.validation.CouponValidator;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// quotes a coupon against an order amount without redeeming it. amounts are rounded
+// half up to cents once at the boundary, the discount itself is plain long arithmetic
+@Service
+public class CouponPricingService {
+
+    // carts per bulk quote, the same size as a bulk create chunk
+    public static final int MAX_CARTS = 500;
+
+    private final CouponService couponService;
+    private final CouponValidator couponValidator;
+    private final CouponMetrics.Operation quoteMetrics;
+    private final CouponMetrics.Operation quoteBatchMetrics;
+
+    public CouponPricingService(CouponService couponService,
+                                CouponValidator couponValidator,
+                                CouponMetrics couponMetrics) {
+        this.couponService = couponService;
+        this.couponValidator = couponValidator;
+        this.quoteMetrics = couponMetrics.operation("quote");
+        this.quoteBatchMetrics = couponMetrics.operation("quote_batch");
+    }
+
+    public CouponQuoteDTO quote(String code, BigDecimal amount) {
+        return quoteMetrics.record(() -> {
+            long amountCents = toCents(amount);
+            CouponResponseDTO coupon = applicable(code);
+            return quote(coupon.code(), amountCents, toCents(coupon.discountValue()));
+        });
+    }
+
+    public CouponQuoteBatchDTO quoteAll(List<CouponQuoteRequestDTO> carts) {
+        return quoteAll(carts, lookups -> {
+        });
+    }
+
+    // every distinct code is looked up and converted once, each cart after that is
+    // a subtraction on longs. the lookups are reported so the caller can charge them
+    // to the client like the same number of single quotes
+    public CouponQuoteBatchDTO quoteAll(List<CouponQuoteRequestDTO> carts, Consumer<Lookups> lookups) {
+        return quoteBatchMetrics.record(() -> {
+            Map<String, Pricing> pricings = new HashMap<>();
+            List<CouponQuoteItemDTO> items = new ArrayList<>(carts.size());
+            int quoted = 0;
+            for (int index = 0; index < carts.size(); index++) {
+                CouponQuoteRequestDTO cart = carts.get(index);
+                try {
+                    if (cart == null || cart.code() == null) {
+                        throw new InvalidCouponException("code cannot be null");
+                    }
+                    long amountCents = toCents(cart.amount());
+                    Pricing pricing = pricings.computeIfAbsent(couponValidator.normalizeCode(cart.code()), this::pricing);
+                    if (pricing.error() != null) {
+                        throw new InvalidCouponException(pricing.error());
+                    }
+                    items.add(CouponQuoteItemDTO.quoted(index, quote(pricing.code(), amountCents, pricing.discountCents())));
+                    quoted++;
+                } catch (InvalidCouponException ex) {
+                    items.add(CouponQuoteItemDTO.rejected(index, ex.getMessage()));
+                }
+            }
+            int notFound = 0;
+            for (Pricing pricing : pricings.values()) {
+                if (pricing.notFound()) {
+                    notFound++;
+                }
+            }
+            lookups.accept(new Lookups(pricings.size(), notFound));
+            return new CouponQuoteBatchDTO(quoted, items.size() - quoted, items);
+        });
+    }
+
+    private Pricing pricing(String code) {
+        try {
+            CouponResponseDTO coupon = applicable(code);
+            return new Pricing(coupon.code(), toCents(coupon.discountValue()), null, false);
+        } catch (CouponNotFoundException ex) {
+            return new Pricing(code, 0, ex.getMessage(), true);
+        } catch (CouponNotRedeemableException | InvalidCouponException ex) {
+            return new Pricing(code, 0, ex.getMessage(), false);
+        }
+    }
+
+    // same checks and messages as Coupon.redeem, a quote for a coupon that cannot be
+    // redeemed would only be refused at checkout
+    private CouponResponseDTO applicable(String code) {
+        CouponResponseDTO coupon = couponService.findByCode(code);
+        if (coupon.status() == CouponStatus.DELETED) {
+            throw new CouponNotRedeemableException("coupon is deleted");
+        }
+        if (coupon.redeemed()) {
+            throw new CouponNotRedeemableException("coupon is already redeemed");
+        }
+        if (coupon.status() != CouponStatus.ACTIVE) {
+            throw new CouponNotRedeemableException("coupon is not active");
+        }
+        if (couponValidator.isBeforeNow(coupon.expirationDate())) {
+            throw new CouponNotRedeemableException("coupon is expired");
+        }
+        return coupon;
+    }
+
+    private static CouponQuoteDTO quote(String code, long amountCents, long discountCents) {
+        long totalCents = discountedTotal(amountCents, discountCents);
+        return new CouponQuoteDTO(
+                code,
+                BigDecimal.valueOf(amountCents, 2),
+                BigDecimal.valueOf(amountCents - totalCents, 2),
+                BigDecimal.valueOf(totalCents, 2));
+    }
+
+    static long toCents(BigDecimal amount) {
+        if (amount == null) {
+            throw new InvalidCouponException("amount cannot be null");
+        }
+        if (amount.signum() < 0) {
+            throw new InvalidCouponException("amount cannot be negative");
+        }
+        try {
+            // setScale returns the same instance for the usual 2 decimal amounts
+            return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new InvalidCouponException("amount is too large");
+        }
+    }
+
+    static long discountedTotal(long amountCents, long discountCents) {
+        return amountCents > discountCents ? amountCents - discountCents : 0L;
+    }
+
+    public record Lookups(int codes, int notFound) {
+    }
+
+    private record Pricing(String code, long discountCents, String error, boolean notFound) {
+    }
+}
@@ -0,0 +1,289 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.cache.CouponCache;
+import com.charlles.coupon_processor.repository.CouponRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// redemptions of multi-use coupons are taken from striped in-memory permits instead
+// of updating the same row on every request. permits are reserved from the database
+// in blocks with a guarded update, so the total handed out by every instance never
+// passes maxRedemptions even if this one crashes. used permits are written to
+// redemption_count on every flush; a crash loses the unused reserved ones, which
+// can only make a coupon run out early, never redeem too many. coupons with no
+// redemption for idle-timeout (deleted, expired, sold out or just unused) give their
+// reservation back and leave the maps, a later redemption reserves again
+@Component
+public class CouponRedemptionLimiter {
+    private static final Logger log = LoggerFactory.getLogger(CouponRedemptionLimiter.class);
+
+    private final CouponRepository couponRepository;
+    private final CouponCache couponCache;
+    private final int stripes;
+    private final int reserveSize;
+    private final long exhaustedRetryNanos;
+    private final long idleTimeoutNanos;
+    private final Map<Long, Permits> permits = new ConcurrentHashMap<>();
+    private final Map<String, Long> idsByCode = new ConcurrentHashMap<>();
+
+    public CouponRedemptionLimiter(CouponRepository couponRepository,
+                                   CouponCache couponCache,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${coupon.redemptions.stripes:16}") int stripes,
+                                   @Value("${coupon.redemptions.reserve-size:100}") int reserveSize,
+                                   @Value("${coupon.redemptions.exhausted-retry:PT5S}") Duration exhaustedRetry,
+                                   @Value("${coupon.redemptions.idle-timeout:PT10M}") Duration idleTimeout) {
+        this.couponRepository = couponRepository;
+        this.couponCache = couponCache;
+        this.stripes = stripes;
+        this.reserveSize = reserveSize;
+        this.exhaustedRetryNanos = exhaustedRetry.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        Gauge.builder("coupon.redemptions.unwritten", this, CouponRedemptionLimiter::unwritten)
+                .description("multi-use redemptions not written to the database yet")
+                .register(meterRegistry);
+        Gauge.builder("coupon.redemptions.reserved", this, CouponRedemptionLimiter::available)
+                .description("reserved multi-use redemptions not handed out yet")
+                .register(meterRegistry);
+    }
+
+    // known multi-use coupons skip the single-use update in CouponService
+    public boolean isLimited(Long id) {
+        return permits.containsKey(id);
+    }
+
+    public Long limitedId(String code) {
+        return idsByCode.get(code);
+    }
+
+    // users is raised before retired is read and retire sets retired before reading
+    // users, so either this call sees the coupon retired and looks it up again or
+    // retire sees it running and keeps the coupon for another flush
+    public boolean tryRedeem(Long id, String code) {
+        while (true) {
+            Permits coupon = permits.get(id);
+            if (coupon == null) {
+                coupon = permits.computeIfAbsent(id, key -> new Permits(key, code));
+                idsByCode.putIfAbsent(code, id);
+            }
+            coupon.users.increment();
+            try {
+                if (coupon.retired) {
+                    continue;
+                }
+                if (!coupon.tryAcquire()) {
+                    return false;
+                }
+                coupon.unwritten.increment();
+                return true;
+            } finally {
+                coupon.users.decrement();
+            }
+        }
+    }
+
+    // redemptions of this coupon that redemption_count does not include yet
+    public long unwritten(Long id) {
+        Permits coupon = permits.get(id);
+        return coupon == null ? 0 : coupon.unwritten.sum();
+    }
+
+    // one flush at a time, a call that returns has seen every redemption taken before
+    // it written, even if the scheduled flush had already drained part of them
+    @Scheduled(fixedDelayString = "${coupon.redemptions.flush-interval:PT1S}")
+    public synchronized void flush() {
+        long now = System.nanoTime();
+        for (Permits coupon : permits.values()) {
+            if (write(coupon)) {
+                coupon.lastWritten = now;
+            } else if (now - coupon.lastWritten >= idleTimeoutNanos) {
+                retire(coupon);
+            }
+        }
+    }
+
+    // hands the unused reservations back so a restart does not lose them
+    @PreDestroy
+    public void close() {
+        flush();
+        for (Permits coupon : permits.values()) {
+            long unused = coupon.drain();
+            if (unused > 0) {
+                try {
+                    couponRepository.releaseRedemptions(coupon.id, (int) unused);
+                } catch (DataAccessException ex) {
+                    log.warn("could not release {} reserved redemptions of coupon {}", unused, coupon.id, ex);
+                }
+            }
+        }
+    }
+
+    // sumThenReset swaps every cell to 0, increments racing with it land in the next flush
+    private boolean write(Permits coupon) {
+        long redemptions = coupon.unwritten.sumThenReset();
+        if (redemptions == 0) {
+            return false;
+        }
+        try {
+            couponRepository.addRedemptions(coupon.id, (int) redemptions);
+            couponCache.evict(coupon.id);
+        } catch (DataAccessException ex) {
+            coupon.unwritten.add(redemptions);
+            log.warn("could not write {} redemptions of coupon {}", redemptions, coupon.id, ex);
+        }
+        return true;
+    }
+
+    // the coupon lock keeps a reservation from landing on a retired coupon, once no
+    // call is using it nothing can take from it or add to unwritten any more
+    private void retire(Permits coupon) {
+        synchronized (coupon) {
+            coupon.retired = true;
+            if (coupon.users.sum() != 0) {
+                coupon.retired = false;
+                return;
+            }
+            permits.remove(coupon.id, coupon);
+            idsByCode.remove(coupon.code, coupon.id);
+        }
+        write(coupon);
+        long unused = coupon.drain();
+        if (unused > 0) {
+            try {
+                couponRepository.releaseRedemptions(coupon.id, (int) unused);
+            } catch (DataAccessException ex) {
+                log.warn("could not release {} reserved redemptions of coupon {}", unused, coupon.id, ex);
+            }
+        }
+    }
+
+    // what is left after another instance reserved in between is read again
+    private long reserve(Long id) {
+        while (true) {
+            int unreserved = couponRepository.findUnreservedRedemptions(id).orElse(0);
+            if (unreserved <= 0) {
+                return 0;
+            }
+            int block = Math.min(reserveSize, unreserved);
+            if (couponRepository.reserveRedemptions(id, block) == 1) {
+                return block;
+            }
+        }
+    }
+
+    private double unwritten() {
+        return permits.values().stream().mapToLong(coupon -> coupon.unwritten.sum()).sum();
+    }
+
+    private double available() {
+        return permits.values().stream().mapToLong(Permits::available).sum();
+    }
+
+    private final class Permits {
+        // one counter per 64 byte cache line, threads on different stripes do not
+        // invalidate each other like they would on a single AtomicLong
+        private static final int PADDING = 8;
+
+        private final Long id;
+        private final String code;
+        private final AtomicLongArray stripes = new AtomicLongArray(CouponRedemptionLimiter.this.stripes * PADDING);
+        private final LongAdder unwritten = new LongAdder();
+        private final LongAdder users = new LongAdder();
+        private volatile boolean retired;
+        // the database had nothing left to reserve, it is asked again after exhausted-retry
+        // in case other instances released their reservations or the limit was raised
+        private volatile boolean exhausted;
+        private volatile long retryAt;
+        // only read and written by flush
+        private long lastWritten = System.nanoTime();
+
+        private Permits(Long id, String code) {
+            this.id = id;
+            this.code = code;
+        }
+
+        // a thread takes from its own stripe and only looks at the others when it is
+        // empty. the database is asked for more only when every stripe is empty,
+        // one thread at a time
+        boolean tryAcquire() {
+            int home = home();
+            if (take(home)) {
+                return true;
+            }
+            if (waiting()) {
+                // permits added before the last reservation failed are visible now
+                return take(home);
+            }
+            synchronized (this) {
+                if (take(home)) {
+                    return true;
+                }
+                if (waiting()) {
+                    return false;
+                }
+                long reserved = reserve(id);
+                if (reserved == 0) {
+                    retryAt = System.nanoTime() + exhaustedRetryNanos;
+                    exhausted = true;
+                    return false;
+                }
+                exhausted = false;
+                stripes.addAndGet(home * PADDING, reserved - 1);
+                return true;
+            }
+        }
+
+        private boolean waiting() {
+            return exhausted && System.nanoTime() - retryAt < 0;
+        }
+
+        long available() {
+            long available = 0;
+            for (int i = 0; i < CouponRedemptionLimiter.this.stripes; i++) {
+                available += stripes.get(i * PADDING);
+            }
+            return available;
+        }
+
+        long drain() {
+            long drained = 0;
+            for (int i = 0; i < CouponRedemptionLimiter.this.stripes; i++) {
+                drained += stripes.getAndSet(i * PADDING, 0);
+            }
+            return drained;
+        }
+
+        private boolean take(int home) {
+            int count = CouponRedemptionLimiter.this.stripes;
+            for (int i = 0; i < count; i++) {
+                int index = ((home + i) % count) * PADDING;
+                long current = stripes.get(index);
+                while (current > 0) {
+                    if (stripes.compareAndSet(index, current, current - 1)) {
+                        return true;
+                    }
+                    current = stripes.get(index);
+                }
+            }
+            return false;
+        }
+
+        private int home() {
+            long hash = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+            return (int) ((hash >>> 32) % CouponRedemptionLimiter.this.stripes);
+        }
+    }
+}
@@ -1,47 +1,284 @@
 package com.charlles.coupon_processor.service;
 
+import com.charlles.coupon_processor.cache.CouponCache;
+import com.charlles.coupon_processor.cache.CouponMembershipFilter;
+import com.charlles.coupon_processor.cache.SingleFlight;
 import com.charlles.coupon_processor.dto.CouponDTO;
+import com.charlles.coupon_processor.dto.CouponEventType;
+import com.charlles.coupon_processor.dto.CouponFilter;
+import com.charlles.coupon_processor.dto.CouponPageDTO;
 import com.charlles.coupon_processor.dto.CouponResponseDTO;
 import com.charlles.coupon_processor.dto.CouponStatus;
 
 import com.charlles.coupon_processor.entity.Coupon;
+import com.charlles.coupon_processor.exception.CouponCodeAlreadyExistsException;
 import com.charlles.coupon_processor.exception.CouponNotFoundException;
+import com.charlles.coupon_processor.exception.CouponNotRedeemableException;
+import com.charlles.coupon_processor.exception.InvalidCouponException;
 import com.charlles.coupon_processor.repository.CouponRepository;
+import com.charlles.coupon_processor.repository.CouponVersion;
+import com.charlles.coupon_processor.validation.CouponValidator;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
 @Service
 public class CouponService {
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_CODE_ATTEMPTS = 3;
+    private static final int MAX_DELETE_ATTEMPTS = 3;
 
     private final CouponRepository couponRepository;
+    private final CouponCache couponCache;
+    private final CouponMembershipFilter membershipFilter;
+    private final CouponValidator couponValidator;
+    private final CouponCodePool codePool;
+    private final CouponEventLog eventLog;
+    private final CouponRedemptionLimiter redemptionLimiter;
+    private final SingleFlight<Long, CouponResponseDTO> idLoads = new SingleFlight<>();
+    private final CouponMetrics.Operation createMetrics;
+    private final CouponMetrics.Operation findByIdMetrics;
+    private final CouponMetrics.Operation findVersionMetrics;
+    private final CouponMetrics.Operation findByCodeMetrics;
+    private final CouponMetrics.Operation redeemMetrics;
+    private final CouponMetrics.Operation redeemByCodeMetrics;
+    private final CouponMetrics.Operation deleteMetrics;
 
-    public CouponService(CouponRepository couponRepository) {
+    public CouponService(CouponRepository couponRepository,
+                         CouponCache couponCache,
+                         CouponMembershipFilter membershipFilter,
+                         CouponValidator couponValidator,
+                         CouponCodePool codePool,
+                         CouponEventLog eventLog,
+                         CouponRedemptionLimiter redemptionLimiter,
+                         CouponMetrics couponMetrics) {
         this.couponRepository = couponRepository;
+        this.couponCache = couponCache;
+        this.membershipFilter = membershipFilter;
+        this.couponValidator = couponValidator;
+        this.codePool = codePool;
+        this.eventLog = eventLog;
+        this.redemptionLimiter = redemptionLimiter;
+        this.createMetrics = couponMetrics.operation("create");
+        this.findByIdMetrics = couponMetrics.operation("find_by_id");
+        this.findVersionMetrics = couponMetrics.operation("find_version");
+        this.findByCodeMetrics = couponMetrics.operation("find_by_code");
+        this.redeemMetrics = couponMetrics.operation("redeem");
+        this.redeemByCodeMetrics = couponMetrics.operation("redeem_by_code");
+        this.deleteMetrics = couponMetrics.operation("delete");
+        couponMetrics.monitor("id", idLoads);
     }
 
     public CouponResponseDTO create(CouponDTO couponDTO) {
-        Coupon coupon = ToEntity(couponDTO);
-        Coupon savedCoupon = couponRepository.save(coupon);
-
-        return toResponse(savedCoupon);
+        return createMetrics.record(() -> doCreate(couponDTO));
     }
 
     public CouponResponseDTO findById(Long id) {
-        return toResponse(getCoupon(id));
+        return findByIdMetrics.record(() -> loadById(id));
+    }
+
+    // what a conditional GET needs, the cached coupon when there is one and otherwise
+    // three columns by primary key, the entity is never loaded
+    public CouponVersion findVersion(Long id) {
+        return findVersionMetrics.record(() -> {
+            if (!membershipFilter.mightContainId(id)) {
+                throw new CouponNotFoundException("coupon not found swith id: " + id);
+            }
+            CouponResponseDTO cached = couponCache.getIfPresent(id);
+            if (cached != null) {
+                return new CouponVersion(cached.version(), cached.status(), cached.expirationDate());
+            }
+            return couponRepository.findVersion(id)
+                    .orElseThrow(() -> new CouponNotFoundException(
+                            "coupon not found swith id: " + id
+                    ));
+        });
+    }
+
+    public CouponResponseDTO findByCode(String code) {
+        return findByCodeMetrics.record(() -> toResponse(getCouponByCode(code)));
+    }
+
+    public CouponResponseDTO redeem(Long id) {
+        return redeemMetrics.record(() -> doRedeem(id));
+    }
+
+    public CouponResponseDTO redeemByCode(String code) {
+        return redeemByCodeMetrics.record(() -> doRedeemByCode(code));
     }
 
     public void delete(Long id) {
-        Coupon coupon = getCoupon(id);
-        coupon.delete();
-        couponRepository.save(coupon);
-}
+        deleteMetrics.record(() -> doDelete(id));
+    }
+
+    private CouponResponseDTO doCreate(CouponDTO couponDTO) {
+        if (couponDTO.code() != null) {
+            return save(ToEntity(couponDTO, couponDTO.code()));
+        }
+        // a pooled code can only clash with a client supplied code taken after it was generated
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return save(ToEntity(couponDTO, codePool.allocate()));
+            } catch (CouponCodeAlreadyExistsException ex) {
+                if (attempt == MAX_CODE_ATTEMPTS) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private CouponResponseDTO save(Coupon coupon) {
+        Coupon savedCoupon;
+        try {
+            savedCoupon = couponRepository.save(coupon);
+        } catch (DataIntegrityViolationException ex) {
+            throw new CouponCodeAlreadyExistsException("coupon code already exists: " + coupon.getCode());
+        }
+        membershipFilter.add(savedCoupon.getId(), savedCoupon.getCode());
+        eventLog.publish(savedCoupon.getId(), CouponEventType.CREATED, null);
+
+        return toResponse(savedCoupon);
+    }
+
+    // a burst of misses for the same id runs a single findById, the others share its
+    // result or its CouponNotFoundException
+    private CouponResponseDTO loadById(Long id) {
+        return couponCache.get(id, key -> idLoads.load(key, () -> toResponse(getCoupon(key))));
+    }
+
+    public CouponPageDTO findPage(CouponFilter filter, String cursor, int limit) {
+        Long afterId;
+        try {
+            afterId = cursor == null || cursor.isBlank() ? 0L : Long.valueOf(cursor);
+        } catch (NumberFormatException ex) {
+            throw new InvalidCouponException("invalid cursor: " + cursor);
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // one extra row tells whether there is a next page without a count query
+        List<CouponResponseDTO> items = couponRepository.findPage(filter, afterId, pageSize + 1);
+        if (items.size() <= pageSize) {
+            return new CouponPageDTO(items, null);
+        }
+        List<CouponResponseDTO> page = items.subList(0, pageSize);
+        return new CouponPageDTO(page, page.get(pageSize - 1).id());
+    }
+
+    private CouponResponseDTO doRedeem(Long id) {
+        if (!redemptionLimiter.isLimited(id)) {
+            if (couponRepository.redeemById(id, CouponStatus.ACTIVE, Timestamp.from(Instant.now())) == 1) {
+                evict(id);
+                eventLog.publish(id, CouponEventType.REDEEMED, null);
+                return loadById(id);
+            }
+            Coupon coupon = getCoupon(id);
+            if (coupon.getMaxRedemptions() == null) {
+                throw notRedeemable(coupon);
+            }
+        }
+        return redeemLimited(loadById(id));
+    }
+
+    private CouponResponseDTO doRedeemByCode(String code) {
+        String normalizedCode = couponValidator.normalizeCode(code);
+        Long limitedId = redemptionLimiter.limitedId(normalizedCode);
+        if (limitedId != null) {
+            return redeemLimited(loadById(limitedId));
+        }
+        if (couponRepository.redeemByCode(normalizedCode, CouponStatus.ACTIVE, Timestamp.from(Instant.now())) == 0) {
+            Coupon coupon = getCouponByCode(code);
+            if (coupon.getMaxRedemptions() == null) {
+                throw notRedeemable(coupon);
+            }
+            return redeemLimited(loadById(coupon.getId()));
+        }
+        CouponResponseDTO response = toResponse(getCouponByCode(normalizedCode));
+        evict(Long.valueOf(response.id()));
+        eventLog.publish(Long.valueOf(response.id()), CouponEventType.REDEEMED, null);
+        return response;
+    }
+
+    // multi-use coupons are checked against the cached coupon, which every status
+    // change evicts, and then take a permit without touching the row
+    private CouponResponseDTO redeemLimited(CouponResponseDTO coupon) {
+        if (coupon.status() == CouponStatus.DELETED) {
+            throw new CouponNotRedeemableException("coupon is deleted");
+        }
+        if (coupon.status() != CouponStatus.ACTIVE) {
+            throw new CouponNotRedeemableException("coupon is not active");
+        }
+        if (couponValidator.isBeforeNow(coupon.expirationDate())) {
+            throw new CouponNotRedeemableException("coupon is expired");
+        }
+        Long id = Long.valueOf(coupon.id());
+        if (!redemptionLimiter.tryRedeem(id, coupon.code())) {
+            throw new CouponNotRedeemableException("coupon redemption limit reached");
+        }
+        eventLog.publish(id, CouponEventType.REDEEMED, null);
+        return coupon.withRedemptionCount(coupon.redemptionCount() + (int) redemptionLimiter.unwritten(id));
+    }
+
+    // a redeem or flush that updated the row after it was read fails the save on the
+    // version, the coupon is read again instead of writing its old counters back
+    private void doDelete(Long id) {
+        for (int attempt = 1; ; attempt++) {
+            Coupon coupon = getCoupon(id);
+            coupon.delete();
+            try {
+                couponRepository.save(coupon);
+                break;
+            } catch (OptimisticLockingFailureException ex) {
+                if (attempt == MAX_DELETE_ATTEMPTS) {
+                    throw ex;
+                }
+            }
+        }
+        evict(id);
+        eventLog.publish(id, CouponEventType.DELETED, null);
+    }
+
+    // also used by bulk updates, which change rows without going through the entity
+    public void evict(Long id) {
+        couponCache.evict(id);
+        idLoads.forget(id);
+    }
 
     private Coupon getCoupon(Long id) {
+        if (!membershipFilter.mightContainId(id)) {
+            throw new CouponNotFoundException("coupon not found swith id: " + id);
+        }
         return couponRepository.findById(id)
                 .orElseThrow(() -> new CouponNotFoundException(
                         "coupon not found swith id: " + id
                 ));
     }
 
+    // the update lost, the detached coupon only tells the caller why
+    private CouponNotRedeemableException notRedeemable(Coupon coupon) {
+        try {
+            coupon.redeem();
+        } catch (CouponNotRedeemableException ex) {
+            return ex;
+        }
+        return new CouponNotRedeemableException("coupon could not be redeemed");
+    }
+
+    private Coupon getCouponByCode(String code) {
+        String normalizedCode = couponValidator.normalizeCode(code);
+        // a code that does not normalize to 6 characters can never be stored
+        if (normalizedCode.length() != 6 || !membershipFilter.mightContainCode(normalizedCode)) {
+            throw new CouponNotFoundException("coupon not found with code: " + code);
+        }
+        return couponRepository.findByCode(normalizedCode)
+                .orElseThrow(() -> new CouponNotFoundException(
+                        "coupon not found with code: " + code
+                ));
+    }
+
     public CouponResponseDTO toResponse(Coupon coupon) {
         return new CouponResponseDTO(
                 coupon.getId().toString(),
@@ -51,18 +288,25 @@ public class CouponService {
                 coupon.getExpirationDate(),
                 coupon.getStatus(),
                 coupon.isPublished(),
-                coupon.isRedeemed()
+                coupon.isRedeemed(),
+                coupon.getMaxRedemptions(),
+                coupon.getRedemptionCount(),
+                coupon.getVersion()
         );
     }
 
-    private Coupon ToEntity(CouponDTO dto) {
-        return new Coupon(
-                dto.id(),
-                dto.code(),
+    // ids come from the coupons_seq sequence, a client supplied id is ignored
+    private Coupon ToEntity(CouponDTO dto, String code) {
+        Coupon coupon = new Coupon(
+                null,
+                code,
                 dto.description(),
                 dto.discountValue(),
                 dto.expirationDate(),
                 CouponStatus.ACTIVE,
-                dto.isPublished());
+                dto.isPublished(),
+                couponValidator);
+        coupon.setMaxRedemptions(dto.maxRedemptions());
+        return coupon;
     }
 }
@@ -0,0 +1,116 @@
+package com.charlles.coupon_processor.validation;
+
+import com.charlles.coupon_processor.exception.InvalidCouponException;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+
+// same rules and messages as the original Coupon checks, without the regex, the
+// BigDecimal parse and the Timestamp allocation on every coupon
+@Component
+public class CouponValidator {
+    public static final int CODE_LENGTH = 6;
+
+    private static final BigDecimal MIN_DISCOUNT_VALUE = new BigDecimal("0.5");
+    private static final CouponValidator SYSTEM = new CouponValidator(Clock.systemUTC());
+
+    private final Clock clock;
+
+    public CouponValidator(Clock clock) {
+        this.clock = clock;
+    }
+
+    // used where no bean is available, e.g. entities built outside of spring
+    public static CouponValidator system() {
+        return SYSTEM;
+    }
+
+    // equivalent to code.replaceAll("[^a-zA-Z0-9]", ""), a null code still throws
+    public String normalizeCode(String code) {
+        int length = code.length();
+        int first = 0;
+        while (first < length && isCodeChar(code.charAt(first))) {
+            first++;
+        }
+        if (first == length) {
+            return code;
+        }
+        char[] buffer = new char[length - 1];
+        code.getChars(0, first, buffer, 0);
+        int size = first;
+        for (int i = first + 1; i < length; i++) {
+            char c = code.charAt(i);
+            if (isCodeChar(c)) {
+                buffer[size++] = c;
+            }
+        }
+        return new String(buffer, 0, size);
+    }
+
+    // single pass into a fixed 6 char buffer, gives up as soon as a 7th code char shows up
+    public String validateCode(String code) {
+        int length = code.length();
+        if (length == CODE_LENGTH && isCodeChar(code.charAt(0)) && isCodeChar(code.charAt(1))
+                && isCodeChar(code.charAt(2)) && isCodeChar(code.charAt(3))
+                && isCodeChar(code.charAt(4)) && isCodeChar(code.charAt(5))) {
+            return code;
+        }
+        char[] buffer = new char[CODE_LENGTH];
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            char c = code.charAt(i);
+            if (isCodeChar(c)) {
+                if (size == CODE_LENGTH) {
+                    throw invalidCodeLength();
+                }
+                buffer[size++] = c;
+            }
+        }
+        if (size != CODE_LENGTH) {
+            throw invalidCodeLength();
+        }
+        return new String(buffer);
+    }
+
+    public void validateDiscountValue(BigDecimal discountValue) {
+        if (discountValue.compareTo(MIN_DISCOUNT_VALUE) < 0) {
+            throw new InvalidCouponException("minimum discount value is 0.5");
+        }
+        if (discountValue.signum() <= 0) {
+            throw new InvalidCouponException("discount value must be greater than zero");
+        }
+    }
+
+    public void validateExpirationDate(Timestamp expirationDate) {
+        if (isBeforeNow(expirationDate)) {
+            throw new InvalidCouponException("expiration date cannot be in the past");
+        }
+    }
+
+    public void validateMaxRedemptions(Integer maxRedemptions) {
+        if (maxRedemptions != null && maxRedemptions < 1) {
+            throw new InvalidCouponException("max redemptions must be at least 1");
+        }
+    }
+
+    // Timestamp.before(Timestamp.from(clock.instant())) compared field by field
+    public boolean isBeforeNow(Timestamp timestamp) {
+        Instant now = clock.instant();
+        long seconds = Math.floorDiv(timestamp.getTime(), 1000L);
+        if (seconds != now.getEpochSecond()) {
+            return seconds < now.getEpochSecond();
+        }
+        return timestamp.getNanos() < now.getNano();
+    }
+
+    private static boolean isCodeChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static InvalidCouponException invalidCodeLength() {
+        return new InvalidCouponException("code must have exactly 6 characters");
+    }
+}
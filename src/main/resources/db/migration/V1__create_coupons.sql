@@ -0,0 +1,21 @@
+create sequence coupons_seq start with 1 increment by 50;
+
+create table coupons (
+    id bigint not null,
+    code varchar(255) not null,
+    description varchar(1000),
+    discount_value numeric(38,2),
+    expiration_date timestamp(6),
+    status enum ('ACTIVE','DELETED','INACTIVE'),
+    published boolean not null,
+    redeemed boolean not null,
+    primary key (id),
+    constraint ux_coupons_code unique (code)
+);
+
+-- keyset listing by status / flags / expiration window, see CouponQueryRepositoryImpl
+create index idx_coupons_status_id on coupons (status, id);
+create index idx_coupons_published_redeemed_id on coupons (published, redeemed, id);
+create index idx_coupons_expiration_date_id on coupons (expiration_date, id);
+-- expiry sweep: status = ACTIVE and expiration_date <= now
+create index idx_coupons_status_expiration_date on coupons (status, expiration_date);
@@ -0,0 +1,10 @@
+create table idempotency_keys (
+    idempotency_key varchar(300) not null,
+    response clob not null,
+    created_at timestamp(6) not null,
+    expires_at timestamp(6) not null,
+    primary key (idempotency_key)
+);
+
+-- purge of expired keys
+create index idx_idempotency_keys_expires_at on idempotency_keys (expires_at);
@@ -0,0 +1,13 @@
+create sequence coupon_events_seq start with 1 increment by 50;
+
+create table coupon_events (
+    id bigint not null,
+    coupon_id bigint not null,
+    type enum ('CREATED','DELETED','REDEEMED','STATUS_CHANGED') not null,
+    detail varchar(255),
+    occurred_at timestamp(6) not null,
+    primary key (id)
+);
+
+-- history of one coupon
+create index idx_coupon_events_coupon_id_id on coupon_events (coupon_id, id);
@@ -0,0 +1,5 @@
+-- multi-use coupons, max_redemptions stays null for single-use ones.
+-- redemptions_reserved <= max_redemptions is enforced by the reserving update, see CouponRedemptionLimiter
+alter table coupons add column max_redemptions integer;
+alter table coupons add column redemption_count integer default 0 not null;
+alter table coupons add column redemptions_reserved integer default 0 not null;
@@ -0,0 +1,2 @@
+-- optimistic lock and http etag, every update of a coupon row increments it
+alter table coupons add column version bigint default 0 not null;
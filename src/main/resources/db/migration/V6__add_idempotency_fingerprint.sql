@@ -0,0 +1,3 @@
+-- hash of method, path and body of the request that first used the key, null on keys
+-- stored before it existed
+alter table idempotency_keys add column request_fingerprint varchar(64);
@@ -0,0 +1,84 @@
+package com.charlles.coupon_processor;
+
+import com.charlles.coupon_processor.dto.CouponDTO;
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.charlles.coupon_processor.service.CouponService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// boots the prod profile against a throwaway file database, the context only starts
+// if the flyway migrations produce exactly the schema hibernate validates against
+@SpringBootTest(properties = "coupon.expiry.enabled=false")
+@ActiveProfiles("prod")
+class ProdProfileMigrationTest {
+
+    private static final Path DB_DIR = tempDir();
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CouponService couponService;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("COUPON_DB_PATH", () -> DB_DIR.resolve("coupondb").toString());
+    }
+
+    @Test
+    void shouldMigrateFileDatabaseAndCreateQueryIndexes() {
+        assertEquals(0, flyway.info().pending().length);
+        assertTrue(Arrays.stream(flyway.info().applied()).allMatch(migration -> migration.getState().isApplied()));
+
+        List<String> indexes = jdbcTemplate.queryForList(
+                "select lower(index_name) from information_schema.indexes where table_name = 'COUPONS'",
+                String.class);
+        assertTrue(indexes.containsAll(List.of(
+                "idx_coupons_status_id",
+                "idx_coupons_published_redeemed_id",
+                "idx_coupons_expiration_date_id",
+                "idx_coupons_status_expiration_date")), indexes.toString());
+        assertTrue(indexes.stream().anyMatch(name -> name.startsWith("ux_coupons_code")), indexes.toString());
+
+        CouponResponseDTO created = couponService.create(new CouponDTO(
+                null,
+                "PRD001",
+                "file backed",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true));
+        assertEquals("PRD001", couponService.findById(Long.valueOf(created.id())).code());
+        assertTrue(Files.exists(DB_DIR.resolve("coupondb.mv.db")));
+    }
+
+    private static Path tempDir() {
+        try {
+            Path dir = Files.createTempDirectory("coupon-prod-db-");
+            dir.toFile().deleteOnExit();
+            return dir;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.charlles.coupon_processor.cache;
+
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.charlles.coupon_processor.dto.CouponStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CouponCacheTest {
+
+    private final CouponCache cache = new CouponCache(100, Duration.ofMinutes(5));
+
+    @Test
+    void shouldLoadOnceAndServeFromCache() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, id -> { loads.incrementAndGet(); return response(id, LocalDateTime.now().plusDays(1)); });
+        cache.get(1L, id -> { loads.incrementAndGet(); return response(id, LocalDateTime.now().plusDays(1)); });
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void shouldNotKeepEntriesPastCouponExpiration() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, id -> { loads.incrementAndGet(); return response(id, LocalDateTime.now().plusNanos(50_000_000)); });
+        Thread.sleep(100);
+        cache.get(1L, id -> { loads.incrementAndGet(); return response(id, LocalDateTime.now().plusDays(1)); });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldNotCacheLoadThatRacedWithEviction() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, id -> {
+            loads.incrementAndGet();
+            cache.evict(id);
+            return response(id, LocalDateTime.now().plusDays(1));
+        });
+        cache.get(1L, id -> { loads.incrementAndGet(); return response(id, LocalDateTime.now().plusDays(1)); });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldKeepCachingOtherKeysWhileOneIsEvicted() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, id -> {
+            loads.incrementAndGet();
+            cache.evict(2L);
+            return response(id, LocalDateTime.now().plusDays(1));
+        });
+        cache.get(1L, id -> { loads.incrementAndGet(); return response(id, LocalDateTime.now().plusDays(1)); });
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void shouldExposeHitAndMissMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+
+        cache.get(1L, id -> response(id, LocalDateTime.now().plusDays(1)));
+        cache.get(1L, id -> response(id, LocalDateTime.now().plusDays(1)));
+
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "coupons").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "coupons").tag("result", "miss").functionCounter().count());
+    }
+
+    private CouponResponseDTO response(Long id, LocalDateTime expiration) {
+        return new CouponResponseDTO(
+                id.toString(),
+                "CAC123",
+                "cached",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(expiration),
+                CouponStatus.ACTIVE,
+                true,
+                false,
+                null,
+                0,
+                0
+        );
+    }
+}
@@ -0,0 +1,48 @@
+package com.charlles.coupon_processor.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CouponMembershipFilterTest {
+
+    @Test
+    void shouldReportEverythingAsPresentUntilReady() {
+        CouponMembershipFilter filter = new CouponMembershipFilter(1000, 0.01);
+
+        assertTrue(filter.mightContainId(42L));
+        assertTrue(filter.mightContainCode("ABC123"));
+    }
+
+    @Test
+    void shouldNeverReportAddedCouponsAsAbsent() {
+        CouponMembershipFilter filter = new CouponMembershipFilter(10_000, 0.01);
+        for (long id = 1; id <= 10_000; id++) {
+            filter.add(id, String.format("C%05d", id));
+        }
+        filter.markReady();
+
+        for (long id = 1; id <= 10_000; id++) {
+            assertTrue(filter.mightContainId(id));
+            assertTrue(filter.mightContainCode(String.format("C%05d", id)));
+        }
+    }
+
+    @Test
+    void shouldKeepFalsePositivesNearConfiguredProbability() {
+        CouponMembershipFilter filter = new CouponMembershipFilter(10_000, 0.01);
+        for (long id = 1; id <= 10_000; id++) {
+            filter.add(id, String.format("C%05d", id));
+        }
+        filter.markReady();
+
+        int falsePositives = 0;
+        for (long id = 10_001; id <= 110_000; id++) {
+            if (filter.mightContainId(id)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+}
@@ -0,0 +1,124 @@
+package com.charlles.coupon_processor.cache;
+
+import com.charlles.coupon_processor.exception.CouponNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<Long, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void shouldShareOneLoadBetweenConcurrentCallers() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = callConcurrently(8, () -> singleFlight.load(1L, () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return "coupon-1";
+        }), loading, release);
+
+        for (Future<String> result : results) {
+            assertEquals("coupon-1", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, singleFlight.executed());
+        assertEquals(7, singleFlight.coalesced());
+    }
+
+    @Test
+    void shouldShareTheExceptionOfTheLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = callConcurrently(4, () -> singleFlight.load(1L, () -> {
+            loading.countDown();
+            await(release);
+            throw new CouponNotFoundException("coupon not found swith id: 1");
+        }), loading, release);
+
+        for (Future<String> result : results) {
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(CouponNotFoundException.class, ex.getCause());
+        }
+        assertEquals(1, singleFlight.executed());
+    }
+
+    @Test
+    void shouldStartAFreshLoadAfterForget() {
+        AtomicInteger loads = new AtomicInteger();
+
+        String value = singleFlight.load(1L, () -> {
+            loads.incrementAndGet();
+            singleFlight.forget(1L);
+            // a caller arriving after the write must not join the load above
+            return "stale-" + singleFlight.load(1L, () -> "fresh-" + loads.incrementAndGet());
+        });
+
+        assertEquals("stale-fresh-2", value);
+        assertEquals(0, singleFlight.coalesced());
+    }
+
+    @Test
+    void shouldNotCoalesceSequentialLoads() {
+        singleFlight.load(1L, () -> "first");
+
+        assertEquals("second", singleFlight.load(1L, () -> "second"));
+        assertEquals(2, singleFlight.executed());
+    }
+
+    // the first task starts the load, the others are submitted while it is blocked and
+    // it is only released once every one of them has joined it
+    private List<Future<String>> callConcurrently(int callers, Callable<String> call,
+                                                  CountDownLatch loading, CountDownLatch release) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(call));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(call));
+            }
+            // a joiner is counted as coalesced right before it waits on the blocked load
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (singleFlight.coalesced() < callers - 1) {
+                assertTrue(System.nanoTime() - deadline < 0, "joiners did not reach the load");
+                Thread.onSpinWait();
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                try {
+                    result.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException ignored) {
+                    // asserted by the caller
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
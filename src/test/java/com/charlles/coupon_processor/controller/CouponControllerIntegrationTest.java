@@ -2,7 +2,10 @@ package com.charlles.coupon_processor.controller;
 
 import com.charlles.coupon_processor.dto.CouponDTO;
 import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.charlles.coupon_processor.entity.Coupon;
 import com.charlles.coupon_processor.repository.CouponRepository;
+import com.charlles.coupon_processor.service.CouponEventLog;
+import com.charlles.coupon_processor.service.CouponPricingService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,12 +13,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.json.JsonCompareMode;
 import org.springframework.test.web.servlet.MockMvc;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.cfg.DateTimeFeature;
+import tools.jackson.dataformat.cbor.CBORMapper;
 
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
 
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -29,6 +43,9 @@ public class CouponControllerIntegrationTest {
     @Autowired
     private CouponRepository repository;
 
+    @Autowired
+    private CouponEventLog eventLog;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
 
@@ -61,9 +78,9 @@ public class CouponControllerIntegrationTest {
     void shouldReturnBadRequestWhenInvalidData() throws Exception {
         CouponDTO dto = new CouponDTO(
                 null,
-                null,
+                "BAD001",
                 "description",
-                new BigDecimal("10.00"),
+                null,
                 Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
                 true
         );
@@ -74,6 +91,36 @@ public class CouponControllerIntegrationTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void shouldCreateCouponWithGeneratedCodeWhenCodeIsOmitted() throws Exception {
+        CouponDTO dto = new CouponDTO(
+                null,
+                null,
+                "generated",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+
+        String createResponse = mockMvc.perform(post("/coupon")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.code").value(matchesPattern("[A-Z0-9]{6}")))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        CouponResponseDTO created = objectMapper.readValue(createResponse, CouponResponseDTO.class);
+
+        mockMvc.perform(get("/coupon/code/" + created.code()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(created.id()));
+
+        mockMvc.perform(get("/actuator/metrics/coupon.code.pool.depth"))
+                .andExpect(status().isOk());
+    }
+
     @Test
     void shouldFindCouponById() throws Exception {
         CouponDTO dto = new CouponDTO(
@@ -95,10 +142,137 @@ public class CouponControllerIntegrationTest {
 
         CouponResponseDTO created = objectMapper.readValue(createResponse, CouponResponseDTO.class);
 
-        mockMvc.perform(get("/coupon/" + created.id()))
+        String found = mockMvc.perform(get("/coupon/" + created.id()))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.code").value("FIN025"))
-                .andExpect(jsonPath("$.discountValue").value(20.00));
+                .andExpect(jsonPath("$.discountValue").value(20.00))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        // the second read writes the json kept for the cached response
+        mockMvc.perform(get("/coupon/" + created.id()))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue("Content-Length", found.length()))
+                .andExpect(content().json(found, JsonCompareMode.STRICT));
+    }
+
+    @Test
+    void shouldAnswerConditionalGetsWithNotModifiedUntilTheCouponChanges() throws Exception {
+        CouponDTO dto = new CouponDTO(
+                null,
+                "ETG001",
+                "etag",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+        String createResponse = mockMvc.perform(post("/coupon")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        CouponResponseDTO created = objectMapper.readValue(createResponse, CouponResponseDTO.class);
+
+        String etag = mockMvc.perform(get("/coupon/" + created.id()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"0\""))
+                .andExpect(header().string("Cache-Control", "max-age=60, must-revalidate"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        mockMvc.perform(get("/coupon/" + created.id()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+
+        // the redeem increments the version, the old etag no longer matches
+        mockMvc.perform(post("/coupon/" + created.id() + "/redeem"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/coupon/" + created.id()).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"1\""))
+                .andExpect(jsonPath("$.redeemed").value(true));
+
+        mockMvc.perform(get("/coupon/999").header("If-None-Match", etag))
+                .andExpect(status().isNotFound());
+
+        String pageEtag = mockMvc.perform(get("/coupon").param("redeemed", "true"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        mockMvc.perform(get("/coupon").param("redeemed", "true").header("If-None-Match", pageEtag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void shouldNegotiateCborForRequestsResponsesAndErrors() throws Exception {
+        CBORMapper cbor = CBORMapper.builder().enable(DateTimeFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        CouponDTO dto = new CouponDTO(
+                null,
+                "CBR001",
+                "binary",
+                new BigDecimal("12.50"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+
+        byte[] created = mockMvc.perform(post("/coupon")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(cbor.writeValueAsBytes(dto)))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+        JsonNode coupon = cbor.readTree(created);
+        assertEquals("CBR001", coupon.get("code").asString());
+        assertEquals(new BigDecimal("12.50"), coupon.get("discountValue").decimalValue());
+        assertEquals(dto.expirationDate().getTime(), coupon.get("expirationDate").longValue());
+
+        String id = coupon.get("id").asString();
+        byte[] found = mockMvc.perform(get("/coupon/" + id).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+        String json = mockMvc.perform(get("/coupon/" + id))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        assertEquals("CBR001", cbor.readTree(found).get("code").asString());
+        assertTrue(found.length < json.length(), () -> found.length + " >= " + json.length());
+
+        byte[] batch = mockMvc.perform(post("/coupon/batch")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(cbor.writeValueAsBytes(List.of(dto, new CouponDTO(
+                                null, "CBR002", "binary", BigDecimal.ONE, dto.expirationDate(), false)))))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+        assertEquals(1, cbor.readTree(batch).get("accepted").intValue());
+        assertEquals(1, cbor.readTree(batch).get("rejected").intValue());
+
+        byte[] notFound = mockMvc.perform(get("/coupon/999").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+        assertEquals(404, cbor.readTree(notFound).get("status").intValue());
     }
 
     @Test
@@ -160,4 +334,599 @@ public class CouponControllerIntegrationTest {
         mockMvc.perform(delete("/coupon/" + created.id()))
                 .andExpect(status().isConflict());
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldCreateCouponsInBatch() throws Exception {
+        CouponDTO valid = new CouponDTO(
+                null,
+                "BAT001",
+                "batch valid",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+        CouponDTO invalid = new CouponDTO(
+                null,
+                "BAT",
+                "batch invalid",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+
+        mockMvc.perform(post("/coupon/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new CouponDTO[]{valid, invalid})))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.items[0].accepted").value(true))
+                .andExpect(jsonPath("$.items[1].error").value("code must have exactly 6 characters"));
+    }
+
+    @Test
+    void shouldCreateCouponsFromNdjsonStream() throws Exception {
+        CouponDTO first = new CouponDTO(
+                null,
+                "NDJ001",
+                "ndjson first",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+        CouponDTO second = new CouponDTO(
+                null,
+                "NDJ002",
+                "ndjson second",
+                new BigDecimal("12.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                false
+        );
+
+        String body = objectMapper.writeValueAsString(first) + "\n" + objectMapper.writeValueAsString(second) + "\n";
+
+        mockMvc.perform(post("/coupon/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejected").value(0));
+    }
+
+    @Test
+    void shouldRejectAMalformedNdjsonLineAfterCommittedChunksAndKeepReading() throws Exception {
+        // the default chunk of 500 is committed before the broken line is read
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 501; i++) {
+            body.append(objectMapper.writeValueAsString(new CouponDTO(null, String.format("N%05d", i), "ndjson",
+                    new BigDecimal("10.00"), Timestamp.valueOf(LocalDateTime.now().plusDays(30)), true))).append('\n');
+        }
+        body.append("{\"code\": \"BROKEN\",\n");
+        body.append(objectMapper.writeValueAsString(new CouponDTO(null, "NDJ999", "after the broken line",
+                new BigDecimal("10.00"), Timestamp.valueOf(LocalDateTime.now().plusDays(30)), true))).append('\n');
+
+        mockMvc.perform(post("/coupon/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(502))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.items[501].accepted").value(false))
+                .andExpect(jsonPath("$.items[501].error").value(matchesPattern("(?s)malformed ndjson line: .*")))
+                .andExpect(jsonPath("$.items[502].accepted").value(true));
+        assertEquals(502, repository.count());
+    }
+
+    @Test
+    void shouldFindAndRedeemCouponByCode() throws Exception {
+        CouponDTO dto = new CouponDTO(
+                null,
+                "AB-12.3C",
+                "by code",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+
+        mockMvc.perform(post("/coupon")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/coupon/code/AB123C"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value("AB123C"));
+
+        mockMvc.perform(post("/coupon/code/AB-12.3C/redeem"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.redeemed").value(true));
+
+        mockMvc.perform(post("/coupon/code/AB123C/redeem"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void shouldQuoteCouponWithoutRedeemingIt() throws Exception {
+        CouponDTO dto = new CouponDTO(
+                null,
+                "APL025",
+                "apply",
+                new BigDecimal("25.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+        mockMvc.perform(post("/coupon")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/coupon/APL-025/apply")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\":120.50}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value("APL025"))
+                .andExpect(jsonPath("$.discount").value(25.00))
+                .andExpect(jsonPath("$.total").value(95.50));
+
+        mockMvc.perform(post("/coupon/apply")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"code\":\"APL025\",\"amount\":10},{\"code\":\"NOP999\",\"amount\":10}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quoted").value(1))
+                .andExpect(jsonPath("$.items[0].quote.total").value(0.00))
+                .andExpect(jsonPath("$.items[1].quoted").value(false));
+
+        String tooMany = "[" + String.join(",", Collections.nCopies(
+                CouponPricingService.MAX_CARTS + 1, "{\"code\":\"APL025\",\"amount\":10}")) + "]";
+        mockMvc.perform(post("/coupon/apply")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(tooMany))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("at most 500 carts per request"));
+
+        mockMvc.perform(get("/coupon/code/APL025"))
+                .andExpect(jsonPath("$.redeemed").value(false));
+
+        mockMvc.perform(post("/coupon/APL025/apply")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/coupon/NOP999/apply")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"amount\":10}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldReturnCouponHistoryIncludingEventsNotWrittenYet() throws Exception {
+        CouponDTO dto = new CouponDTO(
+                null,
+                "HIS025",
+                "history",
+                new BigDecimal("25.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+        String createResponse = mockMvc.perform(post("/coupon")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        CouponResponseDTO created = objectMapper.readValue(createResponse, CouponResponseDTO.class);
+
+        mockMvc.perform(post("/coupon/" + created.id() + "/redeem"))
+                .andExpect(status().isOk());
+        eventLog.flush();
+        mockMvc.perform(delete("/coupon/" + created.id()))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/coupon/" + created.id() + "/history"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].type").value("CREATED"))
+                .andExpect(jsonPath("$[1].type").value("REDEEMED"))
+                .andExpect(jsonPath("$[2].type").value("DELETED"));
+
+        mockMvc.perform(get("/coupon/999999/history"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldRedeemMultiUseCouponUpToItsLimit() throws Exception {
+        CouponDTO dto = new CouponDTO(
+                null,
+                "MUL025",
+                "two customers",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true,
+                2
+        );
+        mockMvc.perform(post("/coupon")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.maxRedemptions").value(2))
+                .andExpect(jsonPath("$.redemptionCount").value(0));
+
+        mockMvc.perform(post("/coupon/code/MUL025/redeem"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.redemptionCount").value(1))
+                .andExpect(jsonPath("$.redeemed").value(false));
+        mockMvc.perform(post("/coupon/code/MUL025/redeem"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.redemptionCount").value(2))
+                .andExpect(jsonPath("$.redeemed").value(true));
+        mockMvc.perform(post("/coupon/code/MUL025/redeem"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("coupon redemption limit reached"));
+
+        dto = new CouponDTO(null, "MUL026", "none", new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)), true, 0);
+        mockMvc.perform(post("/coupon")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldKeepTheVersionWhenOnlyReservationsChange() throws Exception {
+        CouponDTO dto = new CouponDTO(null, "MUL027", "reservations", new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)), true, 10);
+        String createResponse = mockMvc.perform(post("/coupon")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        Long id = Long.valueOf(objectMapper.readValue(createResponse, CouponResponseDTO.class).id());
+
+        assertEquals(1, repository.reserveRedemptions(id, 5));
+        assertEquals(1, repository.releaseRedemptions(id, 2));
+
+        Coupon coupon = repository.findById(id).orElseThrow();
+        assertEquals(3, coupon.getRedemptionsReserved());
+        assertEquals(0, coupon.getVersion());
+    }
+
+    @Test
+    void shouldReturnConflictWhenCodeAlreadyExists() throws Exception {
+        CouponDTO dto = new CouponDTO(
+                null,
+                "DUP025",
+                "duplicate code",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+
+        mockMvc.perform(post("/coupon")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/coupon")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void shouldRedeemCouponOnlyOnce() throws Exception {
+        CouponDTO dto = new CouponDTO(
+                null,
+                "RED025",
+                "redeem by id",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+
+        String createResponse = mockMvc.perform(post("/coupon")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        CouponResponseDTO created = objectMapper.readValue(createResponse, CouponResponseDTO.class);
+
+        mockMvc.perform(post("/coupon/" + created.id() + "/redeem"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.redeemed").value(true));
+
+        mockMvc.perform(post("/coupon/" + created.id() + "/redeem"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("coupon is already redeemed"));
+    }
+
+    @Test
+    void shouldReplayCreateAndRedeemWithTheSameIdempotencyKey() throws Exception {
+        CouponDTO dto = new CouponDTO(
+                null,
+                "IDM025",
+                "idempotent create",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+
+        String first = mockMvc.perform(post("/coupon")
+                        .header("Idempotency-Key", "create-IDM025")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "false"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String retry = mockMvc.perform(post("/coupon")
+                        .header("Idempotency-Key", "create-IDM025")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(header().exists("Location"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        CouponResponseDTO created = objectMapper.readValue(first, CouponResponseDTO.class);
+        assertEquals(created.id(), objectMapper.readValue(retry, CouponResponseDTO.class).id());
+        assertEquals(1, repository.count());
+
+        mockMvc.perform(post("/coupon/" + created.id() + "/redeem")
+                        .header("Idempotency-Key", "redeem-IDM025"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.redeemed").value(true));
+
+        mockMvc.perform(post("/coupon/" + created.id() + "/redeem")
+                        .header("Idempotency-Key", "redeem-IDM025"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.redeemed").value(true));
+
+        // the same key on another coupon or with another body is a different request
+        mockMvc.perform(post("/coupon/code/IDM025/redeem")
+                        .header("Idempotency-Key", "redeem-IDM025"))
+                .andExpect(status().isUnprocessableContent())
+                .andExpect(jsonPath("$.status").value(422));
+
+        mockMvc.perform(post("/coupon")
+                        .header("Idempotency-Key", "create-IDM025")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new CouponDTO(
+                                null, "IDM026", "idempotent create", new BigDecimal("10.00"),
+                                Timestamp.valueOf(LocalDateTime.now().plusDays(30)), true))))
+                .andExpect(status().isUnprocessableContent());
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    void shouldListCouponsWithCursorPagination() throws Exception {
+        for (String code : new String[]{"PAG001", "PAG002", "PAG003"}) {
+            CouponDTO dto = new CouponDTO(
+                    null,
+                    code,
+                    "paged",
+                    new BigDecimal("10.00"),
+                    Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                    true
+            );
+            mockMvc.perform(post("/coupon")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(dto)))
+                    .andExpect(status().isCreated());
+        }
+
+        String firstPage = mockMvc.perform(get("/coupon").param("limit", "2").param("status", "ACTIVE"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].code").value("PAG001"))
+                .andExpect(jsonPath("$.nextCursor").exists())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String cursor = objectMapper.readTree(firstPage).get("nextCursor").asText();
+
+        mockMvc.perform(get("/coupon").param("limit", "2").param("status", "ACTIVE").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].code").value("PAG003"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        mockMvc.perform(get("/coupon").param("redeemed", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(0));
+
+        mockMvc.perform(get("/coupon").param("cursor", "abc"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldBulkDeleteAndChangeStatusByIdsOrFilter() throws Exception {
+        String[] ids = new String[3];
+        for (int i = 0; i < ids.length; i++) {
+            CouponDTO dto = new CouponDTO(
+                    null,
+                    "BLK00" + (i + 1),
+                    "bulk",
+                    new BigDecimal("10.00"),
+                    Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                    true
+            );
+            String createResponse = mockMvc.perform(post("/coupon")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(dto)))
+                    .andExpect(status().isCreated())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+            ids[i] = objectMapper.readValue(createResponse, CouponResponseDTO.class).id();
+        }
+        mockMvc.perform(delete("/coupon/" + ids[2]))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(post("/coupon/bulk/delete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[" + ids[0] + "," + ids[2] + ",999999]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.matched").value(2))
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.alreadyDeleted").value(1))
+                .andExpect(jsonPath("$.notFound").value(1));
+
+        mockMvc.perform(get("/coupon/" + ids[1]))
+                .andExpect(jsonPath("$.status").value("ACTIVE"));
+
+        mockMvc.perform(post("/coupon/bulk/status")
+                        .param("target", "INACTIVE")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"codePrefix\":\"BL-K\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.matched").value(3))
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.alreadyDeleted").value(2));
+
+        mockMvc.perform(get("/coupon/" + ids[1]))
+                .andExpect(jsonPath("$.status").value("INACTIVE"));
+        mockMvc.perform(get("/coupon/" + ids[0]))
+                .andExpect(jsonPath("$.status").value("DELETED"));
+
+        mockMvc.perform(post("/coupon/bulk/delete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/coupon/bulk/status")
+                        .param("target", "DELETED")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"codePrefix\":\"BLK\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldExportCouponsAsNdjsonAndCsv() throws Exception {
+        for (String code : new String[]{"EXP001", "EXP002"}) {
+            CouponDTO dto = new CouponDTO(
+                    null,
+                    code,
+                    "export, \"quoted\"",
+                    new BigDecimal("10.00"),
+                    Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                    true
+            );
+            mockMvc.perform(post("/coupon")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(dto)))
+                    .andExpect(status().isCreated());
+        }
+
+        String ndjson = mockMvc.perform(get("/coupon/export").param("status", "ACTIVE"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String[] lines = ndjson.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("EXP001", objectMapper.readTree(lines[0]).get("code").asText());
+
+        String csv = mockMvc.perform(get("/coupon/export").param("format", "csv"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=coupons.csv"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String[] rows = csv.split("\n");
+        assertEquals(3, rows.length);
+        assertTrue(rows[1].contains(",EXP001,\"export, \"\"quoted\"\"\",10.00,"));
+
+        mockMvc.perform(get("/coupon/export").param("status", "DELETED"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(get("/coupon/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldImportCsvAsyncAndReportRejectedLines() throws Exception {
+        String expiration = LocalDateTime.now().plusDays(30).toString().replace('T', ' ');
+        String csv = "code,description,discountValue,expirationDate,published\n"
+                + "IMP001,\"first, imported\",10.00," + expiration + ",true\n"
+                + "IMP,short code,10.00," + expiration + ",true\n"
+                + "IMP003,bad discount,ten," + expiration + ",false\n";
+
+        String started = mockMvc.perform(multipart("/coupon/import")
+                        .file(new MockMultipartFile("file", "coupons.csv", "text/csv", csv.getBytes())))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String jobId = objectMapper.readTree(started).get("id").asText();
+
+        String state = "";
+        for (int attempt = 0; attempt < 100 && !state.equals("COMPLETED"); attempt++) {
+            Thread.sleep(100);
+            String job = mockMvc.perform(get("/coupon/import/" + jobId))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+            state = objectMapper.readTree(job).get("state").asText();
+        }
+        assertEquals("COMPLETED", state);
+
+        mockMvc.perform(get("/coupon/import/" + jobId))
+                .andExpect(jsonPath("$.rowsRead").value(3))
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.rejected").value(2))
+                .andExpect(jsonPath("$.progress").value(1.0));
+
+        String errors = mockMvc.perform(get("/coupon/import/" + jobId + "/errors"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        assertTrue(errors.contains("3,\"code must have exactly 6 characters\""));
+        assertTrue(errors.contains("4,\"invalid discount value: ten\""));
+
+        mockMvc.perform(get("/coupon/code/IMP001"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.description").value("first, imported"));
+
+        mockMvc.perform(get("/coupon/import/unknown"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldRecordOperationOutcomesAndErrorMetrics() throws Exception {
+        mockMvc.perform(get("/coupon/999999"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/actuator/metrics/coupon.operations")
+                        .param("tag", "operation:find_by_id", "outcome:not_found"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[?(@.statistic == 'COUNT')].value").value(hasItem(greaterThanOrEqualTo(1.0))));
+
+        mockMvc.perform(get("/actuator/metrics/coupon.errors")
+                        .param("tag", "handler:coupon_not_found", "status:404"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/metrics/hikaricp.connections.max"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,208 @@
+package com.charlles.coupon_processor.controller;
+
+import com.charlles.coupon_processor.CouponProcessorApplication;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.server.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// compares the platform thread pool with virtual threads under a burst of slow requests,
+// run with: mvn -Pload-test test
+@Tag("load")
+class CouponControllerLoadTest {
+    private static final Logger log = LoggerFactory.getLogger(CouponControllerLoadTest.class);
+
+    private static final int CLIENTS = 500;
+    private static final int REQUESTS_PER_CLIENT = 10;
+    private static final int TOMCAT_MAX_THREADS = 200;
+    // tomcat still caps concurrent requests at threads.max with virtual threads,
+    // in that mode it is a concurrency limit and not a pool size
+    private static final int VIRTUAL_MAX_CONCURRENCY = 2000;
+
+    @Test
+    void shouldCompareVirtualAndPlatformThreads() throws Exception {
+        List<Result> platform = run(false);
+        List<Result> virtual = run(true);
+
+        log.info(String.format("%-22s %-9s %10s %10s %10s %10s", "endpoint", "threads", "requests", "p50 ms", "p99 ms", "max conc"));
+        for (int i = 0; i < platform.size(); i++) {
+            log.info(platform.get(i).format("platform"));
+            log.info(virtual.get(i).format("virtual"));
+        }
+
+        for (int i = 0; i < platform.size(); i++) {
+            assertEquals(0, platform.get(i).failures, platform.get(i).endpoint);
+            assertEquals(0, virtual.get(i).failures, virtual.get(i).endpoint);
+            assertTrue(platform.get(i).maxConcurrency <= TOMCAT_MAX_THREADS);
+            assertTrue(virtual.get(i).maxConcurrency > TOMCAT_MAX_THREADS);
+        }
+    }
+
+    private List<Result> run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(CouponProcessorApplication.class, LatencyProbe.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.threads.max=" + (virtualThreads ? VIRTUAL_MAX_CONCURRENCY : TOMCAT_MAX_THREADS),
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "spring.datasource.url=jdbc:h2:mem:coupon-load-" + virtualThreads,
+                        "coupon.expiry.enabled=false",
+                        "coupon.rate-limit.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+             HttpClient client = HttpClient.newBuilder()
+                     .executor(Executors.newVirtualThreadPerTaskExecutor())
+                     .connectTimeout(Duration.ofSeconds(10))
+                     .build()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            LatencyProbe probe = context.getBean(LatencyProbe.class);
+            String baseUrl = "http://localhost:" + port + "/coupon";
+            String expirationDate = LocalDateTime.now().plusDays(30).toString();
+            AtomicInteger codes = new AtomicInteger();
+
+            String created = send(client, post(baseUrl, expirationDate, "SEED00")).body();
+            String id = created.replaceAll(".*\"id\":\"?(\\d+)\"?.*", "$1");
+
+            List<Result> results = new ArrayList<>();
+            probe.reset();
+            results.add(load(client, probe, "POST /coupon",
+                    n -> post(baseUrl, expirationDate, String.format("L%05d", codes.incrementAndGet()))));
+            probe.reset();
+            results.add(load(client, probe, "GET /coupon/{id}",
+                    n -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + id)).GET().build()));
+            return results;
+        }
+    }
+
+    private Result load(HttpClient client, LatencyProbe probe, String endpoint, IntFunction<HttpRequest> requests) throws Exception {
+        long[] latencies = new long[CLIENTS * REQUESTS_PER_CLIENT];
+        AtomicInteger next = new AtomicInteger();
+        AtomicLong failures = new AtomicLong();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                futures.add(clients.submit(() -> {
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        int slot = next.getAndIncrement();
+                        HttpRequest request = requests.apply(slot);
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = send(client, request);
+                            if (response.statusCode() >= 400) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (IOException ex) {
+                            failures.incrementAndGet();
+                        }
+                        latencies[slot] = System.nanoTime() - start;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        Arrays.sort(latencies);
+        return new Result(endpoint, latencies.length, failures.get(),
+                percentile(latencies, 0.50), percentile(latencies, 0.99), probe.maxInFlight());
+    }
+
+    private static HttpRequest post(String baseUrl, String expirationDate, String code) {
+        String body = """
+                {"code":"%s","description":"load test","discountValue":10.00,"expirationDate":"%s","published":true}
+                """.formatted(code, expirationDate);
+        return HttpRequest.newBuilder(URI.create(baseUrl))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static HttpResponse<String> send(HttpClient client, HttpRequest request) throws IOException {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private record Result(String endpoint, int requests, long failures, double p50, double p99, int maxConcurrency) {
+
+        String format(String threads) {
+            return String.format("%-22s %-9s %10d %10.1f %10.1f %10d", endpoint, threads, requests, p50, p99, maxConcurrency);
+        }
+    }
+
+    // stands in for a slow downstream call and counts how many requests the server
+    // is handling at the same time
+    @Configuration
+    static class LatencyProbe {
+        private static final long LATENCY_MILLIS = 500;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Bean
+        OncePerRequestFilter latencyProbeFilter() {
+            return new OncePerRequestFilter() {
+                @Override
+                protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                        throws ServletException, IOException {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(LATENCY_MILLIS);
+                        chain.doFilter(request, response);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new ServletException(ex);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                }
+            };
+        }
+
+        void reset() {
+            maxInFlight.set(0);
+        }
+
+        int maxInFlight() {
+            return maxInFlight.get();
+        }
+    }
+}
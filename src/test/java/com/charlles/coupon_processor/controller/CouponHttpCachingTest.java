@@ -0,0 +1,43 @@
+package com.charlles.coupon_processor.controller;
+
+import com.charlles.coupon_processor.dto.CouponStatus;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CouponHttpCachingTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final CouponHttpCaching caching = new CouponHttpCaching(
+            Clock.fixed(NOW, ZoneOffset.UTC), Duration.ofMinutes(1), Duration.ofDays(1));
+
+    @Test
+    void shouldMatchWeakStrongListedAndWildcardTags() {
+        assertEquals("W/\"7\"", caching.etag(7));
+        assertTrue(caching.notModified("W/\"7\"", 7));
+        assertTrue(caching.notModified("\"7\"", 7));
+        assertTrue(caching.notModified("\"3\", W/\"7\"", 7));
+        assertTrue(caching.notModified("*", 7));
+        assertFalse(caching.notModified("W/\"6\"", 7));
+        assertFalse(caching.notModified(" ", 7));
+    }
+
+    @Test
+    void shouldNotCacheCouponsPastTheirExpiration() {
+        assertEquals("max-age=60, must-revalidate",
+                caching.cacheControl(CouponStatus.ACTIVE, Timestamp.from(NOW.plusSeconds(3600))).getHeaderValue());
+        assertEquals("max-age=20, must-revalidate",
+                caching.cacheControl(CouponStatus.ACTIVE, Timestamp.from(NOW.plusSeconds(20))).getHeaderValue());
+        assertEquals("max-age=60, must-revalidate",
+                caching.cacheControl(CouponStatus.INACTIVE, Timestamp.from(NOW.minusSeconds(20))).getHeaderValue());
+        assertEquals("max-age=86400",
+                caching.cacheControl(CouponStatus.DELETED, Timestamp.from(NOW.plusSeconds(20))).getHeaderValue());
+    }
+}
@@ -0,0 +1,86 @@
+package com.charlles.coupon_processor.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// the limiter is off in the other test contexts, this one has its own buckets
+@SpringBootTest(properties = "coupon.rate-limit.enabled=true")
+@AutoConfigureMockMvc
+class CouponRateLimitIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void shouldRateLimitClientsGuessingCodes() throws Exception {
+        int notFound = 0;
+        MvcResult limited = null;
+        while (limited == null && notFound < 100) {
+            MvcResult result = mockMvc.perform(get("/coupon/code/ZZZ999").with(remoteAddr("10.20.30.40")))
+                    .andReturn();
+            if (result.getResponse().getStatus() == 429) {
+                limited = result;
+            } else {
+                assertEquals(404, result.getResponse().getStatus());
+                notFound++;
+            }
+        }
+
+        assertNotNull(limited);
+        // 404s cost 1 + not-found-penalty tokens of the 100 token burst, plus what refilled meanwhile
+        assertTrue(notFound >= 20 && notFound < 50, notFound + " lookups before 429");
+        assertEquals("1", limited.getResponse().getHeader("Retry-After"));
+        assertTrue(limited.getResponse().getContentAsString().contains("\"status\":429"));
+
+        mockMvc.perform(get("/coupon/code/ZZZ999").with(remoteAddr("10.20.30.41")))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/coupon").with(remoteAddr("10.20.30.40")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldRateLimitClientsGuessingCodesInBulk() throws Exception {
+        StringBuilder carts = new StringBuilder("[");
+        for (int i = 0; i < 50; i++) {
+            carts.append(i == 0 ? "" : ",").append("{\"code\":\"ZZB").append(100 + i).append("\",\"amount\":10}");
+        }
+        carts.append("]");
+
+        // one request is let through, its 50 missing codes cost what 50 lookups would
+        mockMvc.perform(post("/coupon/apply").with(remoteAddr("10.20.30.50"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(carts.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rejected").value(50));
+
+        mockMvc.perform(post("/coupon/apply").with(remoteAddr("10.20.30.50"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(carts.toString()))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+        mockMvc.perform(get("/coupon/code/ZZB100").with(remoteAddr("10.20.30.50")))
+                .andExpect(status().isTooManyRequests());
+        mockMvc.perform(get("/coupon/code/ZZB100").with(remoteAddr("10.20.30.51")))
+                .andExpect(status().isNotFound());
+    }
+
+    private static RequestPostProcessor remoteAddr(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+}
@@ -2,6 +2,7 @@ package com.charlles.coupon_processor.entity;
 
 import com.charlles.coupon_processor.dto.CouponStatus;
 import com.charlles.coupon_processor.exception.CouponAlreadyDeletedException;
+import com.charlles.coupon_processor.exception.CouponNotRedeemableException;
 import com.charlles.coupon_processor.exception.InvalidCouponException;
 import org.junit.jupiter.api.Test;
 
@@ -256,4 +257,59 @@ class CouponTest {
             );
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldNormalizeCodeForLookups() {
+        assertEquals("AB123C", Coupon.normalizeCode("AB-12.3C"));
+        assertEquals("AB123C", Coupon.normalizeCode("AB123C"));
+    }
+
+    @Test
+    void shouldRedeemActiveCoupon() {
+        Coupon coupon = new Coupon(
+                null,
+                "RED123",
+                "redeem test",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                CouponStatus.ACTIVE,
+                true
+        );
+
+        coupon.redeem();
+
+        assertTrue(coupon.isRedeemed());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenRedeemingTwice() {
+        Coupon coupon = new Coupon(
+                null,
+                "RED456",
+                "redeem twice",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                CouponStatus.ACTIVE,
+                true
+        );
+
+        coupon.redeem();
+
+        assertThrows(CouponNotRedeemableException.class, coupon::redeem);
+    }
+
+    @Test
+    void shouldThrowExceptionWhenRedeemingDeletedCoupon() {
+        Coupon coupon = new Coupon(
+                null,
+                "RED789",
+                "redeem deleted",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                CouponStatus.DELETED,
+                true
+        );
+
+        assertThrows(CouponNotRedeemableException.class, coupon::redeem);
+    }
+}
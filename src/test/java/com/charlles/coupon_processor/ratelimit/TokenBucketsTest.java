@@ -0,0 +1,91 @@
+package com.charlles.coupon_processor.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketsTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong now = new AtomicLong(-5 * SECOND);
+
+    @Test
+    void shouldAllowABurstAndRefillOverTime() {
+        TokenBuckets buckets = new TokenBuckets(3, 10, now::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buckets.tryAcquire("10.0.0.1", 1));
+        }
+        assertEquals(SECOND / 10, buckets.tryAcquire("10.0.0.1", 1));
+        assertEquals(0, buckets.tryAcquire("10.0.0.2", 1));
+
+        now.addAndGet(SECOND / 10);
+        assertEquals(0, buckets.tryAcquire("10.0.0.1", 1));
+        assertTrue(buckets.tryAcquire("10.0.0.1", 1) > 0);
+
+        now.addAndGet(10 * SECOND);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buckets.tryAcquire("10.0.0.1", 1));
+        }
+    }
+
+    @Test
+    void shouldMakeChargedClientsWaitLonger() {
+        TokenBuckets buckets = new TokenBuckets(10, 10, now::get);
+
+        assertEquals(0, buckets.tryAcquire("10.0.0.1", 1));
+        buckets.charge("10.0.0.1", 9);
+        assertEquals(SECOND / 10, buckets.tryAcquire("10.0.0.1", 1));
+
+        buckets.charge("10.0.0.1", 5);
+        assertEquals(6 * SECOND / 10, buckets.tryAcquire("10.0.0.1", 1));
+    }
+
+    @Test
+    void shouldEvictOnlyBucketsThatAreFullAgain() {
+        TokenBuckets buckets = new TokenBuckets(10, 10, now::get);
+        buckets.tryAcquire("10.0.0.1", 1);
+        buckets.tryAcquire("10.0.0.2", 5);
+
+        now.addAndGet(SECOND / 10);
+        buckets.evictIdle();
+
+        assertEquals(1, buckets.size());
+        now.addAndGet(SECOND);
+        buckets.evictIdle();
+        assertEquals(0, buckets.size());
+    }
+
+    @Test
+    void shouldNeverHandOutMoreThanTheBurstConcurrently() throws Exception {
+        TokenBuckets buckets = new TokenBuckets(1000, 1, now::get);
+        AtomicInteger allowed = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        if (buckets.tryAcquire("10.0.0.1", 1) == 0) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertEquals(1000, allowed.get());
+    }
+}
@@ -0,0 +1,83 @@
+package com.charlles.coupon_processor.serialization;
+
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.charlles.coupon_processor.dto.CouponStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.module.SimpleModule;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CouponResponseSerializerTest {
+
+    private final JsonMapper reflective = JsonMapper.builder().build();
+    private final JsonMapper precompiled = JsonMapper.builder()
+            .addModule(new SimpleModule().addSerializer(CouponResponseDTO.class, new CouponResponseSerializer()))
+            .build();
+
+    @Test
+    void shouldWriteTheSameJsonAsTheReflectiveSerializer() {
+        List<CouponResponseDTO> coupons = List.of(
+                coupon("123456789", new BigDecimal("15.00"), 500),
+                coupon("1", new BigDecimal("1E+3"), null),
+                new CouponResponseDTO("2", "ABC123", null, null, null, null, false, true, null, 0, 0));
+
+        for (CouponResponseDTO coupon : coupons) {
+            assertEquals(reflective.writeValueAsString(coupon), precompiled.writeValueAsString(coupon));
+            assertEquals(reflective.writeValueAsString(List.of(coupon)), precompiled.writeValueAsString(List.of(coupon)));
+        }
+    }
+
+    @Test
+    void shouldWriteCachedBytesForTheSameResponse() throws Exception {
+        CouponResponseConverter converter = new CouponResponseConverter(precompiled, true, 100);
+        CouponResponseDTO coupon = coupon("42", new BigDecimal("10.00"), null);
+
+        MockHttpOutputMessage first = new MockHttpOutputMessage();
+        converter.write(coupon, MediaType.APPLICATION_JSON, first);
+        MockHttpOutputMessage second = new MockHttpOutputMessage();
+        converter.write(coupon, MediaType.APPLICATION_JSON, second);
+
+        assertEquals(reflective.writeValueAsString(coupon), first.getBodyAsString());
+        assertEquals(first.getBodyAsString(), second.getBodyAsString());
+        assertEquals(first.getBodyAsBytes().length, first.getHeaders().getContentLength());
+        assertSame(converter.toJson(coupon), converter.toJson(coupon));
+        assertNotSame(converter.toJson(coupon), converter.toJson(coupon.withRedemptionCount(0)));
+        assertFalse(converter.canRead(CouponResponseDTO.class, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void shouldSerializeEveryTimeWhenBytesAreNotCached() throws Exception {
+        CouponResponseConverter converter = new CouponResponseConverter(precompiled, false, 100);
+        CouponResponseDTO coupon = coupon("42", new BigDecimal("10.00"), null);
+
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(coupon, MediaType.APPLICATION_JSON, output);
+
+        assertEquals(reflective.writeValueAsString(coupon), output.getBodyAsString());
+        assertNotSame(converter.toJson(coupon), converter.toJson(coupon));
+    }
+
+    private static CouponResponseDTO coupon(String id, BigDecimal discountValue, Integer maxRedemptions) {
+        return new CouponResponseDTO(
+                id,
+                "ABC123",
+                "serializer \"quoted\" é",
+                discountValue,
+                Timestamp.valueOf(LocalDateTime.of(2030, 1, 2, 3, 4, 5, 600_000_000)),
+                CouponStatus.ACTIVE,
+                true,
+                false,
+                maxRedemptions,
+                maxRedemptions == null ? 0 : 7,
+                3
+        );
+    }
+}
@@ -0,0 +1,156 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.cache.CouponMembershipFilter;
+import com.charlles.coupon_processor.dto.CouponBatchResponseDTO;
+import com.charlles.coupon_processor.dto.CouponDTO;
+import com.charlles.coupon_processor.entity.Coupon;
+import com.charlles.coupon_processor.repository.CouponRepository;
+import com.charlles.coupon_processor.validation.CouponValidator;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CouponBatchServiceTest {
+
+    @Mock
+    private CouponRepository couponRepository;
+
+    @Mock
+    private CouponCodePool codePool;
+
+    @Mock
+    private CouponEventLog eventLog;
+
+    private CouponBatchService batchService;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        batchService = new CouponBatchService(
+                couponRepository,
+                new CouponMembershipFilter(1000, 0.01),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new CouponValidator(Clock.systemUTC()),
+                codePool,
+                eventLog,
+                2);
+    }
+
+    @Test
+    void shouldPersistValidCouponsInChunks() {
+        when(couponRepository.saveAll(anyList())).thenAnswer(invocation -> assignIds(invocation.getArgument(0)));
+
+        CouponBatchResponseDTO response = batchService.createAll(List.of(
+                coupon("AAA111"),
+                coupon("BBB222"),
+                coupon("CCC333")).iterator());
+
+        assertEquals(3, response.accepted());
+        assertEquals(0, response.rejected());
+        assertEquals("1", response.items().get(0).id());
+        assertEquals("3", response.items().get(2).id());
+        verify(couponRepository, times(2)).saveAll(anyList());
+    }
+
+    @Test
+    void shouldReportRejectedItemsWithoutAbortingTheBatch() {
+        when(couponRepository.saveAll(anyList())).thenAnswer(invocation -> assignIds(invocation.getArgument(0)));
+
+        CouponBatchResponseDTO response = batchService.createAll(List.of(
+                coupon("AAA111"),
+                coupon("ABC"),
+                new CouponDTO(null, "CCC333", "no discount", null,
+                        Timestamp.valueOf(LocalDateTime.now().plusDays(30)), true),
+                coupon("DDD444")).iterator());
+
+        assertEquals(2, response.accepted());
+        assertEquals(2, response.rejected());
+        assertTrue(response.items().get(0).accepted());
+        assertEquals("code must have exactly 6 characters", response.items().get(1).error());
+        assertEquals("discount cannot be null", response.items().get(2).error());
+        assertTrue(response.items().get(3).accepted());
+        assertEquals(3, response.items().get(3).index());
+    }
+
+    @Test
+    void shouldAllocatePooledCodesForCouponsWithoutCode() {
+        when(codePool.allocate()).thenReturn("GEN001", "GEN002");
+        when(couponRepository.saveAll(anyList())).thenAnswer(invocation -> assignIds(invocation.getArgument(0)));
+
+        CouponBatchResponseDTO response = batchService.createAll(List.of(
+                coupon(null),
+                coupon("AAA111"),
+                coupon(null)).iterator());
+
+        assertEquals(3, response.accepted());
+        verify(codePool, times(2)).allocate();
+        verify(couponRepository).findExistingCodes(List.of("GEN001", "AAA111"));
+    }
+
+    @Test
+    void shouldRejectCodesThatAlreadyExist() {
+        when(couponRepository.findExistingCodes(anyList())).thenReturn(List.of("BBB222"));
+        when(couponRepository.saveAll(anyList())).thenAnswer(invocation -> assignIds(invocation.getArgument(0)));
+
+        CouponBatchResponseDTO response = batchService.createAll(List.of(
+                coupon("AAA111"),
+                coupon("BB-B222"),
+                coupon("AAA111")).iterator());
+
+        assertEquals(1, response.accepted());
+        assertEquals("coupon code already exists: BBB222", response.items().get(1).error());
+        assertEquals("duplicate code in batch: AAA111", response.items().get(2).error());
+    }
+
+    @Test
+    void shouldRetryIndividuallyWhenChunkInsertFails() {
+        when(couponRepository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(couponRepository.save(any(Coupon.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate"))
+                .thenAnswer(invocation -> assignIds(List.of(invocation.getArgument(0, Coupon.class))).get(0));
+
+        CouponBatchResponseDTO response = batchService.createAll(List.of(
+                coupon("AAA111"),
+                coupon("BBB222")).iterator());
+
+        assertEquals(1, response.accepted());
+        assertEquals("coupon code already exists: AAA111", response.items().get(0).error());
+        assertTrue(response.items().get(1).accepted());
+        verify(couponRepository, times(2)).save(any(Coupon.class));
+    }
+
+    private List<Coupon> assignIds(List<Coupon> coupons) {
+        coupons.forEach(coupon -> ReflectionTestUtils.setField(coupon, "id", ids.incrementAndGet()));
+        return coupons;
+    }
+
+    private CouponDTO coupon(String code) {
+        return new CouponDTO(
+                null,
+                code,
+                "batch coupon",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+    }
+}
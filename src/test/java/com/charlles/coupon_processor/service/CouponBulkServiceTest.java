@@ -0,0 +1,102 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponBulkRequestDTO;
+import com.charlles.coupon_processor.dto.CouponBulkResultDTO;
+import com.charlles.coupon_processor.dto.CouponDTO;
+import com.charlles.coupon_processor.dto.CouponStatus;
+import com.charlles.coupon_processor.exception.InvalidCouponException;
+import com.charlles.coupon_processor.repository.CouponRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"coupon.bulk.chunk-size=2", "coupon.expiry.enabled=false"})
+class CouponBulkServiceTest {
+
+    @Autowired
+    private CouponBulkService bulkService;
+
+    @Autowired
+    private CouponService couponService;
+
+    @Autowired
+    private CouponRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void shouldDeleteByFilterInChunksAndReportAlreadyDeleted() {
+        Long first = create("BLK101", 10);
+        Long second = create("BLK102", 10);
+        Long third = create("BLK103", 10);
+        Long fourth = create("BLK104", 10);
+        Long later = create("BLK105", 60);
+        Long other = create("OTH101", 10);
+        couponService.delete(third);
+        couponService.findById(first);
+
+        CouponBulkResultDTO result = bulkService.delete(new CouponBulkRequestDTO(
+                null, "BLK", null, null, Timestamp.valueOf(LocalDateTime.now().plusDays(30))));
+
+        assertEquals(new CouponBulkResultDTO(4, 3, 0, 1, 0), result);
+        assertEquals(CouponStatus.DELETED, couponService.findById(first).status());
+        assertEquals(CouponStatus.DELETED, repository.findById(second).orElseThrow().getStatus());
+        assertEquals(CouponStatus.DELETED, repository.findById(fourth).orElseThrow().getStatus());
+        assertEquals(CouponStatus.ACTIVE, repository.findById(later).orElseThrow().getStatus());
+        assertEquals(CouponStatus.ACTIVE, repository.findById(other).orElseThrow().getStatus());
+
+        assertEquals(new CouponBulkResultDTO(4, 0, 0, 4, 0), bulkService.delete(new CouponBulkRequestDTO(
+                null, "BLK", null, null, Timestamp.valueOf(LocalDateTime.now().plusDays(30)))));
+    }
+
+    @Test
+    void shouldChangeStatusByIdsSkippingDeletedAndUnchanged() {
+        Long active = create("STA101", 10);
+        Long inactive = create("STA102", 10);
+        Long deleted = create("STA103", 10);
+        bulkService.changeStatus(new CouponBulkRequestDTO(List.of(inactive), null, null, null, null), CouponStatus.INACTIVE);
+        couponService.delete(deleted);
+
+        CouponBulkResultDTO result = bulkService.changeStatus(
+                new CouponBulkRequestDTO(List.of(active, inactive, deleted, active, 999999L), null, null, null, null),
+                CouponStatus.INACTIVE);
+
+        assertEquals(new CouponBulkResultDTO(3, 1, 1, 1, 1), result);
+        assertEquals(CouponStatus.INACTIVE, repository.findById(active).orElseThrow().getStatus());
+        assertEquals(CouponStatus.DELETED, repository.findById(deleted).orElseThrow().getStatus());
+    }
+
+    @Test
+    void shouldRejectEmptyOrAmbiguousSelections() {
+        assertThrows(InvalidCouponException.class,
+                () -> bulkService.delete(new CouponBulkRequestDTO(null, null, null, null, null)));
+        assertThrows(InvalidCouponException.class,
+                () -> bulkService.delete(new CouponBulkRequestDTO(List.of(1L), "BLK", null, null, null)));
+        assertThrows(InvalidCouponException.class,
+                () -> bulkService.delete(new CouponBulkRequestDTO(null, "--", null, null, null)));
+        assertThrows(InvalidCouponException.class,
+                () -> bulkService.changeStatus(new CouponBulkRequestDTO(null, "BLK", null, null, null), CouponStatus.DELETED));
+    }
+
+    private Long create(String code, int expiresInDays) {
+        return Long.valueOf(couponService.create(new CouponDTO(
+                null,
+                code,
+                "bulk",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(expiresInDays)),
+                true
+        )).id());
+    }
+}
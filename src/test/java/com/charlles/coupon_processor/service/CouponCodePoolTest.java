@@ -0,0 +1,122 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.repository.CouponRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CouponCodePoolTest {
+
+    @Mock
+    private CouponRepository couponRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CouponCodePool codePool;
+
+    @BeforeEach
+    void setUp() {
+        codePool = new CouponCodePool(couponRepository, new SyncTaskExecutor(), meterRegistry, 100, 25, 40);
+    }
+
+    @Test
+    void shouldFillThePoolWithUnusedCodesInBatches() {
+        codePool.refill();
+
+        assertEquals(100, codePool.depth());
+        assertEquals(100.0, meterRegistry.get("coupon.code.pool.depth").gauge().value());
+        verify(couponRepository, times(3)).findExistingCodes(anyCollection());
+    }
+
+    @Test
+    void shouldDropCodesThatAlreadyExistInTheTable() {
+        Set<String> stored = new HashSet<>();
+        when(couponRepository.findExistingCodes(anyCollection())).thenAnswer(invocation -> {
+            // every batch of more than one finds its first candidate taken
+            Collection<String> candidates = invocation.getArgument(0);
+            if (candidates.size() == 1) {
+                return List.of();
+            }
+            String taken = candidates.iterator().next();
+            stored.add(taken);
+            return List.of(taken);
+        });
+        codePool.refill();
+
+        Set<String> allocated = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            allocated.add(codePool.allocate());
+        }
+
+        assertEquals(100, allocated.size());
+        assertTrue(allocated.stream().noneMatch(stored::contains));
+        assertTrue(allocated.stream().allMatch(code -> code.matches("[A-Z0-9]{6}")));
+    }
+
+    @Test
+    void shouldRefillBelowTheThresholdAndGenerateInlineWhenEmpty() {
+        AtomicInteger lookups = new AtomicInteger();
+        when(couponRepository.findExistingCodes(anyCollection())).thenAnswer(invocation -> {
+            lookups.incrementAndGet();
+            return List.of();
+        });
+
+        assertNotNull(codePool.allocate());
+        assertEquals(100, codePool.depth());
+
+        // the 76th allocation leaves 24 codes, below the threshold of 25
+        for (int i = 0; i < 76; i++) {
+            codePool.allocate();
+        }
+        assertEquals(100, codePool.depth());
+        assertTrue(lookups.get() > 3);
+    }
+
+    @Test
+    void shouldHandOutEachCodeOnceUnderConcurrency() throws Exception {
+        codePool = new CouponCodePool(couponRepository, new SyncTaskExecutor(), meterRegistry, 2000, 500, 500);
+        codePool.refill();
+        int threads = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    List<String> codes = new ArrayList<>();
+                    for (int i = 0; i < 500; i++) {
+                        codes.add(codePool.allocate());
+                    }
+                    return codes;
+                }));
+            }
+            Set<String> allocated = new HashSet<>();
+            for (Future<List<String>> result : results) {
+                allocated.addAll(result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(threads * 500, allocated.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
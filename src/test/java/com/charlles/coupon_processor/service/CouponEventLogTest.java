@@ -0,0 +1,148 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponEventDTO;
+import com.charlles.coupon_processor.dto.CouponEventType;
+import com.charlles.coupon_processor.entity.CouponEvent;
+import com.charlles.coupon_processor.repository.CouponEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CouponEventLogTest {
+
+    @Mock
+    private CouponEventRepository eventRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final Clock clock = Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+    @Test
+    void shouldWriteQueuedEventsInBatches() {
+        CouponEventLog eventLog = eventLog(100, CouponEventLog.Overflow.DROP);
+        List<Integer> batchSizes = new ArrayList<>();
+        when(eventRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<CouponEvent> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            return batch;
+        });
+
+        for (long id = 1; id <= 25; id++) {
+            eventLog.publish(id, CouponEventType.CREATED, null);
+        }
+        assertEquals(25.0, meterRegistry.get("coupon.events.queue.depth").gauge().value());
+
+        assertEquals(25, eventLog.flush());
+
+        assertEquals(List.of(10, 10, 5), batchSizes);
+        assertEquals(0.0, meterRegistry.get("coupon.events.queue.depth").gauge().value());
+        assertEquals(25.0, counter("written"));
+        assertEquals(0, eventLog.flush());
+    }
+
+    @Test
+    void shouldDropEventsWhenTheQueueIsFull() {
+        CouponEventLog eventLog = eventLog(3, CouponEventLog.Overflow.DROP);
+
+        for (long id = 1; id <= 5; id++) {
+            eventLog.publish(id, CouponEventType.CREATED, null);
+        }
+
+        assertEquals(3.0, meterRegistry.get("coupon.events.queue.depth").gauge().value());
+        assertEquals(2.0, counter("dropped"));
+    }
+
+    @Test
+    void shouldWaitForRoomBeforeDroppingWithBlockOverflow() {
+        CouponEventLog eventLog = eventLog(1, CouponEventLog.Overflow.BLOCK);
+
+        eventLog.publish(1L, CouponEventType.CREATED, null);
+        long start = System.nanoTime();
+        eventLog.publish(2L, CouponEventType.CREATED, null);
+
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+        assertEquals(1.0, counter("dropped"));
+    }
+
+    @Test
+    void shouldCountFailedBatchesWithoutRetryingThem() {
+        CouponEventLog eventLog = eventLog(100, CouponEventLog.Overflow.DROP);
+        when(eventRepository.saveAll(anyList())).thenThrow(new DataAccessResourceFailureException("down"));
+
+        eventLog.publish(1L, CouponEventType.CREATED, null);
+        eventLog.publish(1L, CouponEventType.REDEEMED, null);
+
+        assertEquals(0, eventLog.flush());
+        assertEquals(2.0, counter("failed"));
+        assertEquals(0.0, meterRegistry.get("coupon.events.queue.depth").gauge().value());
+    }
+
+    @Test
+    void shouldAppendPendingEventsToTheStoredHistory() {
+        CouponEventLog eventLog = eventLog(100, CouponEventLog.Overflow.DROP);
+        Timestamp createdAt = Timestamp.from(clock.instant().minusSeconds(60));
+        when(eventRepository.findHistory(1L)).thenReturn(List.of(new CouponEventDTO(CouponEventType.CREATED, null, createdAt)));
+
+        eventLog.publish(1L, CouponEventType.REDEEMED, null);
+        eventLog.publish(2L, CouponEventType.DELETED, null);
+
+        List<CouponEventDTO> history = eventLog.history(1L);
+
+        assertEquals(List.of(CouponEventType.CREATED, CouponEventType.REDEEMED),
+                history.stream().map(CouponEventDTO::type).toList());
+    }
+
+    @Test
+    void shouldNotLoseEventsBeingWrittenFromTheHistory() throws Exception {
+        CouponEventLog eventLog = eventLog(100, CouponEventLog.Overflow.DROP);
+        AtomicBoolean committed = new AtomicBoolean();
+        AtomicReference<List<CouponEventDTO>> history = new AtomicReference<>();
+        Thread reader = new Thread(() -> history.set(eventLog.history(1L)));
+        when(eventRepository.findHistory(1L)).thenAnswer(invocation -> committed.get()
+                ? List.of(new CouponEventDTO(CouponEventType.REDEEMED, null, Timestamp.from(clock.instant())))
+                : List.of());
+        when(eventRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            // the history is asked for after the batch left the queue and before it is committed
+            reader.start();
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (reader.getState() != Thread.State.WAITING && reader.getState() != Thread.State.TERMINATED
+                    && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            committed.set(true);
+            return invocation.getArgument(0);
+        });
+
+        eventLog.publish(1L, CouponEventType.REDEEMED, null);
+        assertEquals(1, eventLog.flush());
+        reader.join(5000);
+
+        assertEquals(List.of(CouponEventType.REDEEMED), history.get().stream().map(CouponEventDTO::type).toList());
+    }
+
+    private CouponEventLog eventLog(int capacity, CouponEventLog.Overflow overflow) {
+        return new CouponEventLog(eventRepository, clock, meterRegistry, capacity, 10, overflow, Duration.ofMillis(50));
+    }
+
+    private double counter(String result) {
+        return meterRegistry.get("coupon.events").tag("result", result).counter().count();
+    }
+}
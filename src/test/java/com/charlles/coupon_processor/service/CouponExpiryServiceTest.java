@@ -0,0 +1,104 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponDTO;
+import com.charlles.coupon_processor.dto.CouponStatus;
+import com.charlles.coupon_processor.entity.Coupon;
+import com.charlles.coupon_processor.repository.CouponRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"coupon.expiry.chunk-size=2", "coupon.expiry.enabled=false"})
+class CouponExpiryServiceTest {
+
+    @Autowired
+    private CouponExpiryService expiryService;
+
+    @Autowired
+    private CouponService couponService;
+
+    @Autowired
+    private CouponRepository repository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void shouldMoveExpiredActiveCouponsToInactiveInChunks() {
+        Long first = create("EXP101");
+        Long second = create("EXP102");
+        Long third = create("EXP103");
+        Long valid = create("EXP104");
+        Long deleted = create("EXP105");
+        couponService.delete(deleted);
+
+        expire(first);
+        expire(second);
+        expire(third);
+        expire(deleted);
+        couponService.findById(first);
+
+        double runsBefore = meterRegistry.get("coupon.expiry.expired").summary().count();
+
+        assertEquals(3, expiryService.sweep());
+
+        assertEquals(CouponStatus.INACTIVE, repository.findById(first).orElseThrow().getStatus());
+        assertEquals(CouponStatus.INACTIVE, repository.findById(third).orElseThrow().getStatus());
+        assertEquals(CouponStatus.ACTIVE, repository.findById(valid).orElseThrow().getStatus());
+        assertEquals(CouponStatus.DELETED, repository.findById(deleted).orElseThrow().getStatus());
+        assertEquals(CouponStatus.INACTIVE, couponService.findById(first).status());
+        assertEquals(runsBefore + 1, meterRegistry.get("coupon.expiry.expired").summary().count());
+
+        assertEquals(0, expiryService.sweep());
+    }
+
+    @Test
+    void shouldSweepABacklogOfManyChunks() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Long id = create("EXP2" + i + "0");
+            expire(id);
+            ids.add(id);
+        }
+        Long valid = create("EXP299");
+
+        assertEquals(7, expiryService.sweep());
+
+        for (Long id : ids) {
+            assertEquals(CouponStatus.INACTIVE, repository.findById(id).orElseThrow().getStatus());
+        }
+        assertEquals(CouponStatus.ACTIVE, repository.findById(valid).orElseThrow().getStatus());
+    }
+
+    private Long create(String code) {
+        return Long.valueOf(couponService.create(new CouponDTO(
+                null,
+                code,
+                "expiry sweep",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        )).id());
+    }
+
+    private void expire(Long id) {
+        Coupon coupon = repository.findById(id).orElseThrow();
+        coupon.setExpirationDate(Timestamp.valueOf(LocalDateTime.now().minusDays(1)));
+        repository.save(coupon);
+    }
+}
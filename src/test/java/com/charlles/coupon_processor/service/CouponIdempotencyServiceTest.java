@@ -0,0 +1,204 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.charlles.coupon_processor.dto.CouponStatus;
+import com.charlles.coupon_processor.entity.IdempotencyRecord;
+import com.charlles.coupon_processor.exception.CouponCodeAlreadyExistsException;
+import com.charlles.coupon_processor.exception.IdempotencyKeyMismatchException;
+import com.charlles.coupon_processor.exception.InvalidCouponException;
+import com.charlles.coupon_processor.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CouponIdempotencyServiceTest {
+
+    private static final String FINGERPRINT = "fingerprint";
+
+    @Mock
+    private IdempotencyRecordRepository repository;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    private CouponIdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new CouponIdempotencyService(repository, jsonMapper, Clock.systemUTC(), 100, Duration.ofHours(24));
+    }
+
+    @Test
+    void shouldReplayTheFirstResultWithoutRunningTheActionAgain() {
+        AtomicInteger calls = new AtomicInteger();
+
+        CouponIdempotencyService.Result first = idempotencyService.execute("create", "key-1", FINGERPRINT, () -> response(calls.incrementAndGet()));
+        CouponIdempotencyService.Result retry = idempotencyService.execute("create", "key-1", FINGERPRINT, () -> response(calls.incrementAndGet()));
+
+        assertEquals(1, calls.get());
+        assertFalse(first.replayed());
+        assertTrue(retry.replayed());
+        assertEquals(first.response(), retry.response());
+        verify(repository, times(1)).save(any(IdempotencyRecord.class));
+        verify(repository, times(1)).findValid(eq("create:key-1"), any());
+    }
+
+    @Test
+    void shouldScopeKeysByOperation() {
+        AtomicInteger calls = new AtomicInteger();
+
+        idempotencyService.execute("create", "key-1", FINGERPRINT, () -> response(calls.incrementAndGet()));
+        idempotencyService.execute("redeem", "key-1", FINGERPRINT, () -> response(calls.incrementAndGet()));
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void shouldReplayFromTheDatabaseAfterARestart() {
+        CouponResponseDTO original = response(7);
+        when(repository.findValid(eq("create:key-1"), any())).thenReturn(Optional.of(new IdempotencyRecord(
+                "create:key-1",
+                FINGERPRINT,
+                jsonMapper.writeValueAsString(original),
+                Timestamp.valueOf(LocalDateTime.now()),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(1)))));
+
+        CouponIdempotencyService.Result result = idempotencyService.execute("create", "key-1", FINGERPRINT, () -> fail("action must not run"));
+
+        assertTrue(result.replayed());
+        assertEquals(original, result.response());
+        verify(repository, never()).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void shouldRefuseAKeyReusedForADifferentRequest() {
+        String first = idempotencyService.fingerprint("POST", "/coupon/1/redeem", null);
+        String other = idempotencyService.fingerprint("POST", "/coupon/2/redeem", null);
+        idempotencyService.execute("redeem", "key-1", first, () -> response(1));
+
+        assertNotEquals(first, other);
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> idempotencyService.execute("redeem", "key-1", other, () -> fail("action must not run")));
+        assertTrue(idempotencyService.execute("redeem", "key-1", first, () -> fail("action must not run")).replayed());
+    }
+
+    @Test
+    void shouldRefuseAStoredKeyReusedForADifferentRequest() {
+        when(repository.findValid(eq("create:key-1"), any())).thenReturn(Optional.of(new IdempotencyRecord(
+                "create:key-1",
+                FINGERPRINT,
+                jsonMapper.writeValueAsString(response(7)),
+                Timestamp.valueOf(LocalDateTime.now()),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(1)))));
+
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> idempotencyService.execute("create", "key-1", "other", () -> fail("action must not run")));
+    }
+
+    @Test
+    void shouldNotStoreFailuresSoTheClientCanRetry() {
+        assertThrows(CouponCodeAlreadyExistsException.class, () -> idempotencyService.execute("create", "key-1", FINGERPRINT, () -> {
+            throw new CouponCodeAlreadyExistsException("coupon code already exists: ABC123");
+        }));
+
+        CouponIdempotencyService.Result retry = idempotencyService.execute("create", "key-1", FINGERPRINT, () -> response(1));
+
+        assertFalse(retry.replayed());
+        verify(repository, times(1)).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void shouldCoalesceConcurrentRequestsWithTheSameKey() throws Exception {
+        int threads = 16;
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<CouponIdempotencyService.Result>> results = new ArrayList<>();
+            results.add(executor.submit(() -> idempotencyService.execute("create", "key-1", FINGERPRINT, () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                await(release);
+                return response(1);
+            })));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < threads; i++) {
+                results.add(executor.submit(() -> idempotencyService.execute("create", "key-1", FINGERPRINT, () -> response(calls.incrementAndGet()))));
+            }
+            release.countDown();
+
+            for (Future<CouponIdempotencyService.Result> result : results) {
+                assertEquals("1", result.get(5, TimeUnit.SECONDS).response().id());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void shouldRunWithoutAKeyEveryTime() {
+        AtomicInteger calls = new AtomicInteger();
+
+        idempotencyService.execute("create", null, null, () -> response(calls.incrementAndGet()));
+        idempotencyService.execute("create", null, null, () -> response(calls.incrementAndGet()));
+
+        assertEquals(2, calls.get());
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void shouldRejectBlankOrOversizedKeys() {
+        assertThrows(InvalidCouponException.class, () -> idempotencyService.execute("create", " ", FINGERPRINT, () -> response(1)));
+        assertThrows(InvalidCouponException.class, () -> idempotencyService.execute("create", "k".repeat(256), FINGERPRINT, () -> response(1)));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static CouponResponseDTO response(long id) {
+        return new CouponResponseDTO(
+                Long.toString(id),
+                "IDM123",
+                "idempotent",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30).withNano(0)),
+                CouponStatus.ACTIVE,
+                true,
+                false,
+                null,
+                0,
+                0
+        );
+    }
+}
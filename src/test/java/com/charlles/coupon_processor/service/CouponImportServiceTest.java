@@ -0,0 +1,93 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponBatchResponseDTO;
+import com.charlles.coupon_processor.dto.CouponDTO;
+import com.charlles.coupon_processor.dto.CouponImportJobDTO;
+import com.charlles.coupon_processor.dto.CouponImportState;
+import com.charlles.coupon_processor.exception.CouponImportJobNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CouponImportServiceTest {
+
+    @Mock
+    private CouponBatchService batchService;
+
+    @Test
+    void shouldDropFinishedJobsAndTheirFilesAfterRetention() {
+        when(batchService.createAll(any())).thenReturn(new CouponBatchResponseDTO(1, 0, List.of()));
+        // runs the job on the calling thread, it has finished when start returns
+        CouponImportService importService = new CouponImportService(
+                batchService, new TaskExecutorAdapter(Runnable::run), 500, Duration.ZERO, 16384);
+        MockMultipartFile file = new MockMultipartFile("file", "coupons.csv", "text/csv",
+                "code,discountValue,expirationDate\nIMP001,10.00,2099-01-01T00:00:00Z\n".getBytes(StandardCharsets.UTF_8));
+
+        CouponImportJobDTO started = importService.start(file);
+        assertEquals(CouponImportState.COMPLETED, importService.status(started.id()).state());
+        Path errorReport = importService.errorReport(started.id());
+        assertTrue(Files.exists(errorReport));
+
+        importService.purgeFinished();
+
+        assertFalse(Files.exists(errorReport));
+        assertThrows(CouponImportJobNotFoundException.class, () -> importService.status(started.id()));
+    }
+
+    @Test
+    void shouldRejectAStrayQuoteAtTheEndOfTheFileAndKeepTheRowsAfterIt() throws Exception {
+        assertStrayQuoteRejected(16384);
+    }
+
+    @Test
+    void shouldRejectAStrayQuoteOnceTheRecordGetsTooLong() throws Exception {
+        assertStrayQuoteRejected(64);
+    }
+
+    private void assertStrayQuoteRejected(int maxRecordLength) throws Exception {
+        List<String> codes = new ArrayList<>();
+        when(batchService.createAll(any())).thenAnswer(invocation -> {
+            Iterator<CouponDTO> coupons = invocation.getArgument(0);
+            int accepted = 0;
+            while (coupons.hasNext()) {
+                codes.add(coupons.next().code());
+                accepted++;
+            }
+            return new CouponBatchResponseDTO(accepted, 0, List.of());
+        });
+        CouponImportService importService = new CouponImportService(
+                batchService, new TaskExecutorAdapter(Runnable::run), 500, Duration.ofHours(1), maxRecordLength);
+        MockMultipartFile file = new MockMultipartFile("file", "coupons.csv", "text/csv", """
+                code,discountValue,expirationDate
+                IMP001,"10.00,2099-01-01T00:00:00Z
+                IMP002,10.00,2099-01-01T00:00:00Z
+                IMP003,10.00,2099-01-01T00:00:00Z
+                IMP004,10.00,2099-01-01T00:00:00Z
+                """.getBytes(StandardCharsets.UTF_8));
+
+        CouponImportJobDTO job = importService.status(importService.start(file).id());
+
+        assertEquals(CouponImportState.COMPLETED, job.state());
+        assertEquals(List.of("IMP002", "IMP003", "IMP004"), codes);
+        assertEquals(3, job.accepted());
+        assertEquals(1, job.rejected());
+        String report = Files.readString(importService.errorReport(job.id()));
+        assertTrue(report.contains("2,\"unterminated quoted field\""), report);
+    }
+}
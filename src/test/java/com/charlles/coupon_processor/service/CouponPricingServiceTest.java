@@ -0,0 +1,128 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponQuoteBatchDTO;
+import com.charlles.coupon_processor.dto.CouponQuoteDTO;
+import com.charlles.coupon_processor.dto.CouponQuoteRequestDTO;
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.charlles.coupon_processor.dto.CouponStatus;
+import com.charlles.coupon_processor.exception.CouponNotFoundException;
+import com.charlles.coupon_processor.exception.CouponNotRedeemableException;
+import com.charlles.coupon_processor.exception.InvalidCouponException;
+import com.charlles.coupon_processor.validation.CouponValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CouponPricingServiceTest {
+
+    @Mock
+    private CouponService couponService;
+
+    private CouponPricingService pricingService;
+
+    @BeforeEach
+    void setUp() {
+        pricingService = new CouponPricingService(
+                couponService,
+                new CouponValidator(Clock.systemUTC()),
+                new CouponMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void shouldMatchTheBigDecimalReference() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            BigDecimal amount = BigDecimal.valueOf(random.nextLong(0, 100_000_000L), random.nextInt(0, 5));
+            BigDecimal discount = BigDecimal.valueOf(random.nextLong(50, 5_000_000L), 2);
+
+            BigDecimal expected = amount.setScale(2, RoundingMode.HALF_UP).subtract(discount).max(BigDecimal.ZERO.setScale(2));
+            long total = CouponPricingService.discountedTotal(
+                    CouponPricingService.toCents(amount),
+                    CouponPricingService.toCents(discount));
+
+            assertEquals(expected, BigDecimal.valueOf(total, 2), () -> amount + " - " + discount);
+        }
+    }
+
+    @Test
+    void shouldQuoteWithoutGoingBelowZero() {
+        when(couponService.findByCode("ABC123")).thenReturn(coupon("ABC123", CouponStatus.ACTIVE, false, 30));
+
+        CouponQuoteDTO quote = pricingService.quote("ABC123", new BigDecimal("100.005"));
+        assertEquals(new BigDecimal("100.01"), quote.amount());
+        assertEquals(new BigDecimal("15.00"), quote.discount());
+        assertEquals(new BigDecimal("85.01"), quote.total());
+
+        CouponQuoteDTO small = pricingService.quote("ABC123", new BigDecimal("9.90"));
+        assertEquals(new BigDecimal("9.90"), small.discount());
+        assertEquals(new BigDecimal("0.00"), small.total());
+    }
+
+    @Test
+    void shouldRejectCouponsThatCannotBeRedeemedAndInvalidAmounts() {
+        when(couponService.findByCode("RED123")).thenReturn(coupon("RED123", CouponStatus.ACTIVE, true, 30));
+        when(couponService.findByCode("EXP123")).thenReturn(coupon("EXP123", CouponStatus.ACTIVE, false, -1));
+
+        assertThrows(CouponNotRedeemableException.class, () -> pricingService.quote("RED123", BigDecimal.TEN));
+        assertThrows(CouponNotRedeemableException.class, () -> pricingService.quote("EXP123", BigDecimal.TEN));
+        assertThrows(InvalidCouponException.class, () -> pricingService.quote("ABC123", new BigDecimal("-1")));
+        assertThrows(InvalidCouponException.class, () -> pricingService.quote("ABC123", null));
+    }
+
+    @Test
+    void shouldQuoteManyCartsLookingEachCodeUpOnce() {
+        when(couponService.findByCode("ABC123")).thenReturn(coupon("ABC123", CouponStatus.ACTIVE, false, 30));
+        when(couponService.findByCode("OFF123")).thenReturn(coupon("OFF123", CouponStatus.INACTIVE, false, 30));
+        when(couponService.findByCode("NOP123")).thenThrow(new CouponNotFoundException("coupon not found with code: NOP123"));
+
+        List<CouponQuoteRequestDTO> carts = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            carts.add(new CouponQuoteRequestDTO(i % 2 == 0 ? "ABC123" : "AB-C123", new BigDecimal("20.00")));
+        }
+        carts.add(new CouponQuoteRequestDTO("OFF123", new BigDecimal("20.00")));
+        carts.add(new CouponQuoteRequestDTO("NOP123", new BigDecimal("20.00")));
+        carts.add(new CouponQuoteRequestDTO("ABC123", null));
+
+        CouponQuoteBatchDTO batch = pricingService.quoteAll(carts);
+
+        assertEquals(50, batch.quoted());
+        assertEquals(3, batch.rejected());
+        assertEquals(new BigDecimal("5.00"), batch.items().get(1).quote().total());
+        assertEquals("coupon is not active", batch.items().get(50).error());
+        assertEquals("coupon not found with code: NOP123", batch.items().get(51).error());
+        assertEquals("amount cannot be null", batch.items().get(52).error());
+        verify(couponService, times(1)).findByCode("ABC123");
+    }
+
+    private static CouponResponseDTO coupon(String code, CouponStatus status, boolean redeemed, int expiresInDays) {
+        return new CouponResponseDTO(
+                "1",
+                code,
+                "pricing",
+                new BigDecimal("15.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(expiresInDays)),
+                status,
+                true,
+                redeemed,
+                null,
+                0,
+                0
+        );
+    }
+}
@@ -0,0 +1,146 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.dto.CouponDTO;
+import com.charlles.coupon_processor.dto.CouponResponseDTO;
+import com.charlles.coupon_processor.entity.Coupon;
+import com.charlles.coupon_processor.exception.CouponNotRedeemableException;
+import com.charlles.coupon_processor.repository.CouponRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// a small reserve size makes the limited coupon go back to the database many times
+@SpringBootTest(properties = "coupon.redemptions.reserve-size=7")
+class CouponRedemptionConcurrencyTest {
+
+    private static final int THREADS = 64;
+    private static final int LIMITED_THREADS = 256;
+    private static final int ATTEMPTS_PER_THREAD = 8;
+    private static final int MAX_REDEMPTIONS = 500;
+
+    @Autowired
+    private CouponService couponService;
+
+    @Autowired
+    private CouponRepository repository;
+
+    @Autowired
+    private CouponRedemptionLimiter redemptionLimiter;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void shouldRedeemExactlyOnceById() throws Exception {
+        CouponResponseDTO coupon = couponService.create(coupon("RACE01"));
+        Long id = Long.valueOf(coupon.id());
+
+        assertExactlyOneSuccess(() -> couponService.redeem(id));
+        assertTrue(couponService.findById(id).redeemed());
+    }
+
+    @Test
+    void shouldRedeemExactlyOnceByCode() throws Exception {
+        couponService.create(coupon("RACE02"));
+
+        assertExactlyOneSuccess(() -> couponService.redeemByCode("RA-CE02"));
+        assertTrue(couponService.findByCode("RACE02").redeemed());
+    }
+
+    @Test
+    void shouldNeverRedeemPastTheLimitUnderContention() throws Exception {
+        CouponResponseDTO coupon = couponService.create(new CouponDTO(
+                null,
+                "MULTI1",
+                "first 500 customers",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true,
+                MAX_REDEMPTIONS
+        ));
+        Long id = Long.valueOf(coupon.id());
+        AtomicInteger attempt = new AtomicInteger();
+
+        int successes = redeemConcurrently(LIMITED_THREADS, ATTEMPTS_PER_THREAD, () -> {
+            if (attempt.incrementAndGet() % 2 == 0) {
+                couponService.redeem(id);
+            } else {
+                couponService.redeemByCode("MU-LTI1");
+            }
+        });
+
+        assertEquals(MAX_REDEMPTIONS, successes);
+        redemptionLimiter.flush();
+        Coupon stored = repository.findById(id).orElseThrow();
+        assertEquals(MAX_REDEMPTIONS, stored.getRedemptionCount());
+        assertEquals(MAX_REDEMPTIONS, stored.getRedemptionsReserved());
+        assertTrue(stored.isRedeemed());
+        assertEquals(MAX_REDEMPTIONS, couponService.findById(id).redemptionCount());
+        assertThrows(CouponNotRedeemableException.class, () -> couponService.redeem(id));
+    }
+
+    private void assertExactlyOneSuccess(Runnable redemption) throws Exception {
+        assertEquals(1, redeemConcurrently(THREADS, 1, redemption));
+    }
+
+    // every attempt either redeems or gets a CouponNotRedeemableException, anything else fails the test
+    private int redeemConcurrently(int threads, int attemptsPerThread, Runnable redemption) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int attempt = 0; attempt < attemptsPerThread; attempt++) {
+                    try {
+                        redemption.run();
+                        successes.incrementAndGet();
+                    } catch (CouponNotRedeemableException ex) {
+                        conflicts.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(threads * attemptsPerThread, successes.get() + conflicts.get());
+        return successes.get();
+    }
+
+    private CouponDTO coupon(String code) {
+        return new CouponDTO(
+                null,
+                code,
+                "concurrent redemption",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+    }
+}
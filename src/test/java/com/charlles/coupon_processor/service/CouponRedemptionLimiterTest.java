@@ -0,0 +1,79 @@
+package com.charlles.coupon_processor.service;
+
+import com.charlles.coupon_processor.cache.CouponCache;
+import com.charlles.coupon_processor.repository.CouponRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CouponRedemptionLimiterTest {
+
+    private static final Long ID = 1L;
+
+    @Mock
+    private CouponRepository repository;
+
+    @Test
+    void shouldWaitForTheRetryBeforeAskingASoldOutCouponAgain() {
+        when(repository.findUnreservedRedemptions(ID)).thenReturn(Optional.of(0));
+        CouponRedemptionLimiter limiter = limiter(Duration.ofHours(1), Duration.ofHours(1));
+
+        assertFalse(limiter.tryRedeem(ID, "LIM001"));
+        assertFalse(limiter.tryRedeem(ID, "LIM001"));
+
+        verify(repository, times(1)).findUnreservedRedemptions(ID);
+    }
+
+    @Test
+    void shouldReserveAgainWhenPermitsComeBackAfterTheRetry() {
+        when(repository.findUnreservedRedemptions(ID)).thenReturn(Optional.of(0), Optional.of(3));
+        when(repository.reserveRedemptions(ID, 3)).thenReturn(1);
+        CouponRedemptionLimiter limiter = limiter(Duration.ZERO, Duration.ofHours(1));
+
+        assertFalse(limiter.tryRedeem(ID, "LIM001"));
+        assertTrue(limiter.tryRedeem(ID, "LIM001"));
+        assertTrue(limiter.tryRedeem(ID, "LIM001"));
+        assertEquals(2, limiter.unwritten(ID));
+    }
+
+    @Test
+    void shouldReleaseTheReservationOfIdleCouponsAndForgetThem() {
+        when(repository.findUnreservedRedemptions(ID)).thenReturn(Optional.of(5));
+        when(repository.reserveRedemptions(ID, 5)).thenReturn(1);
+        CouponRedemptionLimiter limiter = limiter(Duration.ofHours(1), Duration.ZERO);
+
+        assertTrue(limiter.tryRedeem(ID, "LIM001"));
+        limiter.flush();
+        assertTrue(limiter.isLimited(ID));
+
+        limiter.flush();
+
+        verify(repository).addRedemptions(ID, 1);
+        verify(repository).releaseRedemptions(ID, 4);
+        assertFalse(limiter.isLimited(ID));
+        assertNull(limiter.limitedId("LIM001"));
+        assertEquals(0, limiter.unwritten(ID));
+
+        // the next redemption reserves again
+        assertTrue(limiter.tryRedeem(ID, "LIM001"));
+        assertEquals(ID, limiter.limitedId("LIM001"));
+        verify(repository, times(2)).reserveRedemptions(ID, 5);
+        verify(repository, times(1)).releaseRedemptions(eq(ID), anyInt());
+    }
+
+    private CouponRedemptionLimiter limiter(Duration exhaustedRetry, Duration idleTimeout) {
+        return new CouponRedemptionLimiter(repository, new CouponCache(100, Duration.ofMinutes(5)),
+                new SimpleMeterRegistry(), 4, 100, exhaustedRetry, idleTimeout);
+    }
+}
@@ -1,25 +1,47 @@
 package com.charlles.coupon_processor.service;
 
+import com.charlles.coupon_processor.cache.CouponCache;
+import com.charlles.coupon_processor.cache.CouponMembershipFilter;
 import com.charlles.coupon_processor.dto.CouponDTO;
+import com.charlles.coupon_processor.dto.CouponEventType;
+import com.charlles.coupon_processor.dto.CouponFilter;
+import com.charlles.coupon_processor.dto.CouponPageDTO;
 import com.charlles.coupon_processor.dto.CouponResponseDTO;
 import com.charlles.coupon_processor.dto.CouponStatus;
 import com.charlles.coupon_processor.entity.Coupon;
 import com.charlles.coupon_processor.exception.CouponAlreadyDeletedException;
+import com.charlles.coupon_processor.exception.CouponCodeAlreadyExistsException;
 import com.charlles.coupon_processor.exception.CouponNotFoundException;
+import com.charlles.coupon_processor.exception.CouponNotRedeemableException;
 import com.charlles.coupon_processor.repository.CouponRepository;
+import com.charlles.coupon_processor.validation.CouponValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 
 import java.math.BigDecimal;
 import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,6 +50,29 @@ class CouponServiceTest {
     @Mock
     private CouponRepository couponRepository;
 
+    @Mock
+    private CouponCodePool codePool;
+
+    @Mock
+    private CouponEventLog eventLog;
+
+    @Mock
+    private CouponRedemptionLimiter redemptionLimiter;
+
+    @Spy
+    private CouponCache couponCache = new CouponCache(100, Duration.ofMinutes(5));
+
+    @Spy
+    private CouponMembershipFilter membershipFilter = new CouponMembershipFilter(1000, 0.01);
+
+    @Spy
+    private CouponValidator couponValidator = new CouponValidator(Clock.systemUTC());
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private CouponMetrics couponMetrics = new CouponMetrics(meterRegistry);
+
     @InjectMocks
     private CouponService couponService;
 
@@ -60,6 +105,32 @@ class CouponServiceTest {
         assertEquals("ABC123", response.code());
         assertEquals(new BigDecimal("10.00"), response.discountValue());
         verify(couponRepository, times(1)).save(any(Coupon.class));
+        verify(eventLog).publish(1L, CouponEventType.CREATED, null);
+    }
+
+    @Test
+    void shouldCreateCouponWithPooledCodeRetryingOnCollision() {
+        CouponDTO dto = new CouponDTO(
+                null,
+                null,
+                "generated code",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+        when(codePool.allocate()).thenReturn("TAKEN1", "FREE01");
+        when(couponRepository.save(any(Coupon.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate"))
+                .thenAnswer(invocation -> {
+                    Coupon coupon = invocation.getArgument(0);
+                    return new Coupon(1L, coupon.getCode(), coupon.getDescription(), coupon.getDiscountValue(),
+                            coupon.getExpirationDate(), coupon.getStatus(), coupon.isPublished());
+                });
+
+        CouponResponseDTO response = couponService.create(dto);
+
+        assertEquals("FREE01", response.code());
+        verify(codePool, times(2)).allocate();
     }
 
     @Test
@@ -137,4 +208,325 @@ class CouponServiceTest {
         verify(couponRepository, times(1)).findById(id);
         verify(couponRepository, never()).save(any(Coupon.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldRecordOperationOutcomes() {
+        Long id = 1L;
+        Coupon coupon = new Coupon(
+                id,
+                "MET123",
+                "metrics",
+                new BigDecimal("15.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                CouponStatus.ACTIVE,
+                true
+        );
+        when(couponRepository.findById(id)).thenReturn(Optional.of(coupon));
+        when(couponRepository.save(any(Coupon.class))).thenReturn(coupon);
+
+        couponService.delete(id);
+        assertThrows(CouponAlreadyDeletedException.class, () -> couponService.delete(id));
+        assertThrows(CouponNotFoundException.class, () -> couponService.findById(999L));
+
+        assertEquals(1, operations("delete", "success"));
+        assertEquals(1, operations("delete", "already_deleted"));
+        assertEquals(1, operations("find_by_id", "not_found"));
+        assertEquals(0, operations("delete", "error"));
+    }
+
+    @Test
+    void shouldCoalesceConcurrentLoadsOfTheSameCoupon() throws Exception {
+        Long id = 1L;
+        Coupon coupon = new Coupon(
+                id,
+                "HOT123",
+                "campaign launch",
+                new BigDecimal("15.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                CouponStatus.ACTIVE,
+                true
+        );
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(couponRepository.findById(id)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(coupon);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CouponResponseDTO>> results = new ArrayList<>();
+            results.add(executor.submit(() -> couponService.findById(id)));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < 8; i++) {
+                results.add(executor.submit(() -> couponService.findById(id)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<CouponResponseDTO> result : results) {
+                assertEquals("HOT123", result.get(5, TimeUnit.SECONDS).code());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(couponRepository, times(1)).findById(id);
+        assertEquals(7.0, meterRegistry.get("coupon.loads").tags("lookup", "id", "result", "coalesced").functionCounter().count());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenCodeAlreadyExists() {
+        CouponDTO dto = new CouponDTO(
+                null,
+                "ABC123",
+                "duplicate",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+
+        when(couponRepository.save(any(Coupon.class))).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        assertThrows(CouponCodeAlreadyExistsException.class, () -> couponService.create(dto));
+    }
+
+    @Test
+    void shouldFindCouponByNormalizedCode() {
+        Coupon coupon = new Coupon(
+                1L,
+                "AB123C",
+                "code test",
+                new BigDecimal("20.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                CouponStatus.ACTIVE,
+                true
+        );
+
+        when(couponRepository.findByCode("AB123C")).thenReturn(Optional.of(coupon));
+
+        CouponResponseDTO response = couponService.findByCode("AB-12.3C");
+
+        assertEquals("AB123C", response.code());
+        verify(couponRepository, times(1)).findByCode("AB123C");
+    }
+
+    @Test
+    void shouldNotQueryWhenCodeCannotExist() {
+        assertThrows(CouponNotFoundException.class, () -> couponService.findByCode("AB-1"));
+        verify(couponRepository, never()).findByCode(any());
+    }
+
+    @Test
+    void shouldRedeemCouponWithConditionalUpdate() {
+        Long id = 1L;
+        Coupon coupon = new Coupon(
+                id,
+                "RED123",
+                "redeem test",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                CouponStatus.ACTIVE,
+                true
+        );
+        coupon.setRedeemed(true);
+
+        when(couponRepository.redeemById(eq(id), eq(CouponStatus.ACTIVE), any(Timestamp.class))).thenReturn(1);
+        when(couponRepository.findById(id)).thenReturn(Optional.of(coupon));
+
+        CouponResponseDTO response = couponService.redeem(id);
+
+        assertTrue(response.redeemed());
+        verify(couponRepository, never()).save(any(Coupon.class));
+    }
+
+    @Test
+    void shouldReportWhyRedemptionLost() {
+        Long id = 1L;
+        Coupon coupon = new Coupon(
+                id,
+                "RED123",
+                "already redeemed",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                CouponStatus.ACTIVE,
+                true
+        );
+        coupon.setRedeemed(true);
+
+        when(couponRepository.redeemById(eq(id), eq(CouponStatus.ACTIVE), any(Timestamp.class))).thenReturn(0);
+        when(couponRepository.findById(id)).thenReturn(Optional.of(coupon));
+
+        CouponNotRedeemableException ex = assertThrows(CouponNotRedeemableException.class, () -> couponService.redeem(id));
+        assertEquals("coupon is already redeemed", ex.getMessage());
+    }
+
+    @Test
+    void shouldRedeemMultiUseCouponThroughTheLimiter() {
+        Long id = 1L;
+        Coupon coupon = new Coupon(
+                id,
+                "MUL123",
+                "multi-use",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                CouponStatus.ACTIVE,
+                true
+        );
+        coupon.setMaxRedemptions(2);
+
+        when(couponRepository.redeemById(eq(id), eq(CouponStatus.ACTIVE), any(Timestamp.class))).thenReturn(0);
+        when(couponRepository.findById(id)).thenReturn(Optional.of(coupon));
+        when(redemptionLimiter.tryRedeem(id, "MUL123")).thenReturn(true, true, false);
+        when(redemptionLimiter.unwritten(id)).thenReturn(1L, 2L);
+
+        assertEquals(1, couponService.redeem(id).redemptionCount());
+        when(redemptionLimiter.isLimited(id)).thenReturn(true);
+        CouponResponseDTO second = couponService.redeem(id);
+        assertEquals(2, second.redemptionCount());
+        assertTrue(second.redeemed());
+
+        CouponNotRedeemableException ex = assertThrows(CouponNotRedeemableException.class, () -> couponService.redeem(id));
+        assertEquals("coupon redemption limit reached", ex.getMessage());
+        verify(couponRepository, times(1)).redeemById(eq(id), eq(CouponStatus.ACTIVE), any(Timestamp.class));
+        verify(eventLog, times(2)).publish(id, CouponEventType.REDEEMED, null);
+    }
+
+    @Test
+    void shouldThrowNotFoundWhenRedeemingUnknownCoupon() {
+        when(couponRepository.redeemById(eq(999L), eq(CouponStatus.ACTIVE), any(Timestamp.class))).thenReturn(0);
+        when(couponRepository.findById(999L)).thenReturn(Optional.empty());
+
+        assertThrows(CouponNotFoundException.class, () -> couponService.redeem(999L));
+    }
+
+    @Test
+    void shouldServeRepeatedReadsFromCache() {
+        Long id = 1L;
+        Coupon coupon = new Coupon(
+                id,
+                "HOT123",
+                "hot coupon",
+                new BigDecimal("20.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                CouponStatus.ACTIVE,
+                true
+        );
+
+        when(couponRepository.findById(id)).thenReturn(Optional.of(coupon));
+
+        couponService.findById(id);
+        couponService.findById(id);
+
+        verify(couponRepository, times(1)).findById(id);
+    }
+
+    @Test
+    void shouldInvalidateCacheOnDelete() {
+        Long id = 1L;
+        Coupon coupon = new Coupon(
+                id,
+                "HOT456",
+                "deleted hot coupon",
+                new BigDecimal("20.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                CouponStatus.ACTIVE,
+                true
+        );
+
+        when(couponRepository.findById(id)).thenReturn(Optional.of(coupon));
+        when(couponRepository.save(any(Coupon.class))).thenReturn(coupon);
+
+        couponService.findById(id);
+        couponService.delete(id);
+
+        assertEquals(CouponStatus.DELETED, couponService.findById(id).status());
+        verify(couponCache, times(1)).evict(id);
+    }
+
+    @Test
+    void shouldRejectUnknownIdWithoutRepositoryCall() {
+        membershipFilter.add(1L, "KNO123");
+        membershipFilter.markReady();
+
+        assertThrows(CouponNotFoundException.class, () -> couponService.findById(999L));
+        assertThrows(CouponNotFoundException.class, () -> couponService.findByCode("UNK999"));
+        verify(couponRepository, never()).findById(any());
+        verify(couponRepository, never()).findByCode(any());
+    }
+
+    @Test
+    void shouldAddCreatedCouponToMembershipFilter() {
+        CouponDTO dto = new CouponDTO(
+                null,
+                "NEW123",
+                "new coupon",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                true
+        );
+        Coupon savedCoupon = new Coupon(
+                7L,
+                "NEW123",
+                "new coupon",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                CouponStatus.ACTIVE,
+                true
+        );
+
+        when(couponRepository.save(any(Coupon.class))).thenReturn(savedCoupon);
+        membershipFilter.markReady();
+
+        couponService.create(dto);
+
+        assertTrue(membershipFilter.mightContainId(7L));
+        assertTrue(membershipFilter.mightContainCode("NEW123"));
+    }
+
+    @Test
+    void shouldReturnNextCursorWhenMoreRowsExist() {
+        CouponFilter filter = new CouponFilter(CouponStatus.ACTIVE, null, null, null, null);
+        when(couponRepository.findPage(filter, 10L, 3)).thenReturn(List.of(
+                response("11"), response("12"), response("13")));
+
+        CouponPageDTO page = couponService.findPage(filter, "10", 2);
+
+        assertEquals(2, page.items().size());
+        assertEquals("12", page.nextCursor());
+    }
+
+    @Test
+    void shouldReturnNoCursorOnLastPage() {
+        CouponFilter filter = new CouponFilter(null, null, null, null, null);
+        when(couponRepository.findPage(eq(filter), eq(0L), anyInt())).thenReturn(List.of(response("1")));
+
+        CouponPageDTO page = couponService.findPage(filter, null, 50);
+
+        assertEquals(1, page.items().size());
+        assertNull(page.nextCursor());
+    }
+
+    private CouponResponseDTO response(String id) {
+        return new CouponResponseDTO(
+                id,
+                "PAG123",
+                "paged",
+                new BigDecimal("10.00"),
+                Timestamp.valueOf(LocalDateTime.now().plusDays(30)),
+                CouponStatus.ACTIVE,
+                true,
+                false,
+                null,
+                0,
+                0
+        );
+    }
+
+    private long operations(String operation, String outcome) {
+        return meterRegistry.get("coupon.operations")
+                .tags("operation", operation, "outcome", outcome)
+                .timer()
+                .count();
+    }
+}
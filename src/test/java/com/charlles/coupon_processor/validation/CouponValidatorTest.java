@@ -0,0 +1,121 @@
+package com.charlles.coupon_processor.validation;
+
+import com.charlles.coupon_processor.exception.InvalidCouponException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CouponValidatorTest {
+
+    private static final String ALPHABET = "abcXYZ019-. _#çéá١Ａ😀";
+    private static final Instant NOW = Instant.parse("2026-01-15T10:00:00.123456789Z");
+
+    private final CouponValidator validator = new CouponValidator(Clock.fixed(NOW, ZoneOffset.UTC));
+    private final Random random = new Random(42);
+
+    @Test
+    void shouldNormalizeCodesLikeTheRegex() {
+        for (int i = 0; i < 20_000; i++) {
+            String code = randomCode();
+            assertEquals(code.replaceAll("[^a-zA-Z0-9]", ""), validator.normalizeCode(code), code);
+        }
+    }
+
+    @Test
+    void shouldAcceptAndRejectCodesLikeTheRegex() {
+        for (int i = 0; i < 20_000; i++) {
+            String code = randomCode();
+            String expected = code.replaceAll("[^a-zA-Z0-9]", "");
+            if (expected.length() == 6) {
+                assertEquals(expected, validator.validateCode(code), code);
+            } else {
+                InvalidCouponException ex = assertThrows(InvalidCouponException.class, () -> validator.validateCode(code), code);
+                assertEquals("code must have exactly 6 characters", ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    void shouldReturnTheSameInstanceForCleanCodes() {
+        String code = "AB123C";
+        assertSame(code, validator.validateCode(code));
+        assertSame(code, validator.normalizeCode(code));
+    }
+
+    @Test
+    void shouldThrowNullPointerExceptionForNullCodeLikeBefore() {
+        assertThrows(NullPointerException.class, () -> validator.validateCode(null));
+        assertThrows(NullPointerException.class, () -> validator.normalizeCode(null));
+    }
+
+    @Test
+    void shouldValidateDiscountValueLikeBefore() {
+        for (int i = 0; i < 5_000; i++) {
+            BigDecimal discountValue = BigDecimal.valueOf(random.nextInt(4_000) - 1_000, random.nextInt(4));
+            String expected = null;
+            if (discountValue.compareTo(new BigDecimal("0.5")) < 0) {
+                expected = "minimum discount value is 0.5";
+            }
+            String actual = null;
+            try {
+                validator.validateDiscountValue(discountValue);
+            } catch (InvalidCouponException ex) {
+                actual = ex.getMessage();
+            }
+            assertEquals(expected, actual, discountValue.toPlainString());
+        }
+    }
+
+    @Test
+    void shouldValidateExpirationDateLikeTimestampBefore() {
+        Timestamp now = Timestamp.from(NOW);
+        for (int i = 0; i < 20_000; i++) {
+            Timestamp expirationDate = Timestamp.from(NOW.plusNanos(randomOffsetNanos()));
+            boolean expected = expirationDate.before(now);
+            assertEquals(expected, validator.isBeforeNow(expirationDate), expirationDate.toString());
+            if (expected) {
+                InvalidCouponException ex = assertThrows(InvalidCouponException.class,
+                        () -> validator.validateExpirationDate(expirationDate));
+                assertEquals("expiration date cannot be in the past", ex.getMessage());
+            } else {
+                assertDoesNotThrow(() -> validator.validateExpirationDate(expirationDate));
+            }
+        }
+    }
+
+    @Test
+    void shouldTreatTheCurrentInstantAsNotExpired() {
+        assertFalse(validator.isBeforeNow(Timestamp.from(NOW)));
+        assertTrue(validator.isBeforeNow(Timestamp.from(NOW.minusNanos(1))));
+    }
+
+    private String randomCode() {
+        int length = random.nextInt(12);
+        StringBuilder code = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            // bias towards code characters so plenty of inputs land on exactly 6
+            if (random.nextInt(4) > 0) {
+                code.append(ALPHABET.charAt(random.nextInt(9)));
+            } else {
+                code.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+        }
+        return code.toString();
+    }
+
+    // mixes nanosecond, millisecond and multi-day distances on both sides of now
+    private long randomOffsetNanos() {
+        return switch (random.nextInt(3)) {
+            case 0 -> random.nextInt(2_000_001) - 1_000_000L;
+            case 1 -> (random.nextInt(20_001) - 10_000L) * 1_000_000L;
+            default -> (random.nextInt(2_001) - 1_000L) * 86_400_000_000_000L / 100;
+        };
+    }
+}